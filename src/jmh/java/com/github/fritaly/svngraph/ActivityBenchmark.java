@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.svngraph;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// activity of the roots of a history: building the columnar store (on a fresh
+// history since the store is cached) and aggregating it
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ActivityBenchmark {
+
+	@Param({ "100000" })
+	public int revisions;
+
+	private List<Revision> list;
+
+	private ActivityStore store;
+
+	@Setup
+	public void setUp() throws IOException, XMLStreamException, ParseException {
+		final File file = File.createTempFile("svn-log", ".xml");
+
+		final History history;
+
+		try {
+			new LogGenerator(42).setRevisionCount(revisions).generate(file);
+
+			history = History.parse(file);
+		} finally {
+			file.delete();
+		}
+
+		list = new ArrayList<>(history.getRevisions());
+		store = history.getActivityStore();
+	}
+
+	@Benchmark
+	public Object build() {
+		return new History(list).getActivityStore();
+	}
+
+	@Benchmark
+	public Object aggregate() {
+		return store.getActivities();
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.svngraph;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// parsing of a generated log (use -p revisions=<n> to change its size)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class IngestBenchmark {
+
+	// the progress logged by the code measured (on the standard error by
+	// default) isn't part of the measure. The logger is referenced so that its
+	// level isn't lost if garbage collected
+	private static final Logger LOGGER = Logger.getLogger(History.class.getPackage().getName());
+
+	@Param({ "10000" })
+	public int revisions;
+
+	@Param({ "1", "2", "4", "8" })
+	public int threads;
+
+	private File file;
+
+	@Setup
+	public void setUp() throws IOException {
+		file = File.createTempFile("svn-log", ".xml");
+		file.deleteOnExit();
+
+		new LogGenerator(42).setRevisionCount(revisions).generate(file);
+
+		LOGGER.setLevel(Level.WARNING);
+	}
+
+	@TearDown
+	public void tearDown() {
+		file.delete();
+	}
+
+	// each parsing interns the paths in its own dictionary, the iterations
+	// don't depend on each other
+	@Benchmark
+	public History parse() throws IOException, XMLStreamException, ParseException {
+		return History.parse(file, threads);
+	}
+}
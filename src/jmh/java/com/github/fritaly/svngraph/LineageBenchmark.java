@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.svngraph;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// lineage queries: the indexing of a graph, then the common ancestors of 1000
+// random pairs of nodes and the descendants of every branch
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LineageBenchmark {
+
+	@Param({ "100000" })
+	public int revisions;
+
+	private BranchGraph graph;
+
+	private Lineage lineage;
+
+	private RevisionPath[] pairs;
+
+	private String[] branches;
+
+	@Setup
+	public void setUp() throws IOException, XMLStreamException, ParseException {
+		final File file = File.createTempFile("svn-log", ".xml");
+
+		try {
+			new LogGenerator(42).setRevisionCount(revisions).generate(file);
+
+			graph = new BranchGraph();
+			graph.add(History.parse(file));
+		} finally {
+			file.delete();
+		}
+
+		final List<RevisionPath> nodes = new ArrayList<>();
+
+		for (String branch : graph.getBranches()) {
+			for (long revision : graph.getRevisions(branch)) {
+				nodes.add(new RevisionPath(branch, revision));
+			}
+		}
+
+		final Random random = new Random(42);
+
+		pairs = new RevisionPath[2000];
+
+		for (int i = 0; i < pairs.length; i++) {
+			pairs[i] = nodes.get(random.nextInt(nodes.size()));
+		}
+
+		branches = graph.getBranches().toArray(new String[0]);
+		lineage = new Lineage(graph);
+	}
+
+	@Benchmark
+	public Object index() {
+		return new Lineage(graph);
+	}
+
+	@Benchmark
+	public void commonAncestors(Blackhole blackhole) {
+		for (int i = 0; i < pairs.length; i += 2) {
+			blackhole.consume(lineage.getCommonAncestor(pairs[i], pairs[i + 1]));
+		}
+	}
+
+	@Benchmark
+	public void descendants(Blackhole blackhole) {
+		for (String branch : branches) {
+			blackhole.consume(lineage.getDescendants(branch));
+		}
+	}
+}
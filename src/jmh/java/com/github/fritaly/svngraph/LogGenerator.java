@@ -0,0 +1,265 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.svngraph;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Generates a synthetic 'svn log --xml -v' output. The log is deterministic
+ * for a given seed and settings: trunk commits, branches and tags created from
+ * the trunk (or from another branch), merges between branches and deletions of
+ * branches, spread over several modules. The revisions are written in
+ * ascending order (as with 'svn log -r 1:HEAD') so that the log can be
+ * streamed whatever the number of revisions.
+ */
+public final class LogGenerator {
+
+	private static final String[] FILES = { "pom.xml", "README", "src/main/java/com/example/Main.java",
+			"src/main/java/com/example/util/Strings.java", "src/main/resources/config.properties",
+			"src/test/java/com/example/MainTest.java" };
+
+	// 2010-01-01T00:00:00Z
+	private static final long START_SECONDS = 1262304000L;
+
+	private final long seed;
+
+	private int revisionCount = 10000;
+
+	private int moduleCount = 4;
+
+	// the probabilities for a revision to create a branch, create a tag,
+	// merge a branch or delete a branch (otherwise the revision modifies files)
+	private double branchRate = 0.02, tagRate = 0.01, mergeRate = 0.05, deleteRate = 0.005;
+
+	public LogGenerator(long seed) {
+		this.seed = seed;
+	}
+
+	public LogGenerator setRevisionCount(int revisionCount) {
+		Validate.isTrue(revisionCount > 0, String.format("Invalid revision count %d", revisionCount));
+
+		this.revisionCount = revisionCount;
+
+		return this;
+	}
+
+	public LogGenerator setModuleCount(int moduleCount) {
+		Validate.isTrue(moduleCount > 0, String.format("Invalid module count %d", moduleCount));
+
+		this.moduleCount = moduleCount;
+
+		return this;
+	}
+
+	public LogGenerator setBranchRate(double branchRate) {
+		this.branchRate = branchRate;
+
+		return this;
+	}
+
+	public LogGenerator setTagRate(double tagRate) {
+		this.tagRate = tagRate;
+
+		return this;
+	}
+
+	public LogGenerator setMergeRate(double mergeRate) {
+		this.mergeRate = mergeRate;
+
+		return this;
+	}
+
+	public LogGenerator setDeleteRate(double deleteRate) {
+		this.deleteRate = deleteRate;
+
+		return this;
+	}
+
+	public void generate(File file) throws IOException {
+		Validate.notNull(file, "The given file is null");
+
+		Writer writer = null;
+
+		try {
+			writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"), 64 * 1024);
+
+			generate(writer);
+		} finally {
+			if (writer != null) {
+				writer.close();
+			}
+		}
+	}
+
+	public void generate(Writer writer) throws IOException {
+		Validate.notNull(writer, "The given writer is null");
+
+		final Random random = new Random(seed);
+
+		// the live branches of each module
+		final List<List<String>> branches = new ArrayList<>();
+
+		for (int i = 0; i < moduleCount; i++) {
+			branches.add(new ArrayList<String>());
+		}
+
+		writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<log>\n");
+
+		// the first revision creates the layout of the modules
+		startEntry(writer, 1, random);
+
+		for (int i = 0; i < moduleCount; i++) {
+			final String module = "/module" + i;
+
+			writePath(writer, "dir", "A", module, null, -1, false);
+			writePath(writer, "dir", "A", module + "/trunk", null, -1, false);
+			writePath(writer, "dir", "A", module + "/branches", null, -1, false);
+			writePath(writer, "dir", "A", module + "/tags", null, -1, false);
+		}
+
+		endEntry(writer, 1);
+
+		for (int revision = 2; revision <= revisionCount; revision++) {
+			final int index = random.nextInt(moduleCount);
+			final String module = "/module" + index;
+			final List<String> live = branches.get(index);
+
+			startEntry(writer, revision, random);
+
+			final double x = random.nextDouble();
+
+			if (x < branchRate) {
+				// branch created from the trunk or from another branch
+				final String name = "branch-" + revision;
+				final String source = (live.isEmpty() || random.nextBoolean()) ? module + "/trunk" : module + "/branches/"
+						+ live.get(random.nextInt(live.size()));
+
+				writePath(writer, "dir", "A", module + "/branches/" + name, source, revision - 1, false);
+
+				live.add(name);
+			} else if (x < branchRate + tagRate) {
+				final String source = (live.isEmpty() || random.nextBoolean()) ? module + "/trunk" : module + "/branches/"
+						+ live.get(random.nextInt(live.size()));
+
+				writePath(writer, "dir", "A", module + "/tags/" + revision + ".0", source, revision - 1, false);
+			} else if ((x < branchRate + tagRate + mergeRate) && !live.isEmpty()) {
+				// merge of a branch into the trunk: modified files plus a file
+				// copied from the branch
+				final String branch = module + "/branches/" + live.get(random.nextInt(live.size()));
+
+				for (int i = 0, count = 1 + random.nextInt(3); i < count; i++) {
+					writePath(writer, "file", "M", module + "/trunk/" + FILES[random.nextInt(FILES.length)], null, -1, true);
+				}
+
+				writePath(writer, "file", "A", module + "/trunk/src/main/java/com/example/Feature" + revision + ".java", branch
+						+ "/src/main/java/com/example/Feature.java", revision - 1, true);
+			} else if ((x < branchRate + tagRate + mergeRate + deleteRate) && !live.isEmpty()) {
+				final String name = live.remove(random.nextInt(live.size()));
+
+				writePath(writer, "dir", "D", module + "/branches/" + name, null, -1, false);
+			} else {
+				// commit on the trunk or on a branch
+				final String root = (live.isEmpty() || (random.nextInt(10) < 6)) ? module + "/trunk" : module + "/branches/"
+						+ live.get(random.nextInt(live.size()));
+
+				for (int i = 0, count = 1 + random.nextInt(4); i < count; i++) {
+					writePath(writer, "file", "M", root + "/" + FILES[random.nextInt(FILES.length)], null, -1, true);
+				}
+			}
+
+			endEntry(writer, revision);
+		}
+
+		writer.write("</log>\n");
+	}
+
+	private void startEntry(Writer writer, int revision, Random random) throws IOException {
+		// about one commit every 10 minutes
+		final long seconds = START_SECONDS + (revision * 600L) + random.nextInt(600);
+		final int micros = random.nextInt(1000000);
+
+		writer.write("<logentry\n   revision=\"");
+		writer.write(Integer.toString(revision));
+		writer.write("\">\n<author>user");
+		writer.write(Integer.toString(random.nextInt(50)));
+		writer.write("</author>\n<date>");
+		writer.write(String.format("%1$tY-%1$tm-%1$tdT%1$tH:%1$tM:%1$tS.%2$06dZ", toCalendar(seconds), micros));
+		writer.write("</date>\n<paths>\n");
+	}
+
+	private static Calendar toCalendar(long seconds) {
+		final Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+		calendar.setTimeInMillis(seconds * 1000);
+
+		return calendar;
+	}
+
+	private static void endEntry(Writer writer, int revision) throws IOException {
+		writer.write("</paths>\n<msg>Commit #");
+		writer.write(Integer.toString(revision));
+		writer.write(" &amp; some &lt;text&gt;</msg>\n</logentry>\n");
+	}
+
+	private static void writePath(Writer writer, String kind, String action, String path, String copyFromPath,
+			long copyFromRev, boolean textMods) throws IOException {
+
+		writer.write("<path");
+
+		if (textMods) {
+			writer.write("\n   text-mods=\"true\"");
+		}
+
+		writer.write("\n   kind=\"");
+		writer.write(kind);
+		writer.write("\"\n   action=\"");
+		writer.write(action);
+		writer.write("\"");
+
+		if (copyFromPath != null) {
+			writer.write("\n   copyfrom-path=\"");
+			writer.write(copyFromPath);
+			writer.write("\"\n   copyfrom-rev=\"");
+			writer.write(Long.toString(copyFromRev));
+			writer.write("\"");
+		}
+
+		writer.write(">");
+		writer.write(path);
+		writer.write("</path>\n");
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.out.println(String.format("%s <revision-count> <output-file>", LogGenerator.class.getSimpleName()));
+			System.exit(1);
+		}
+
+		new LogGenerator(42).setRevisionCount(Integer.parseInt(args[0])).generate(new File(args[1]));
+	}
+}
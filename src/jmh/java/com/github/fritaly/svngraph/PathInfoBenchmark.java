@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.svngraph;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// compares the classification of a path by PathInfo with the regular
+// expressions formerly used by Utils (kept below as the baseline)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathInfoBenchmark {
+
+	private static final int PATH_COUNT = 1024;
+
+	private static final Pattern BRANCH_PATTERN = Pattern.compile(".*/branches/([^/]+)");
+
+	private static final Pattern TAG_PATTERN = Pattern.compile(".*/tags/([^/]+)");
+
+	private String[] paths;
+
+	@Setup
+	public void setUp() {
+		final String[] roots = { "/project/trunk", "/project/branches/release-1.x", "/project/tags/1.0.3",
+				"/module/sub/branches/feature-42", "/other/dir" };
+		final String[] files = { "", "/pom.xml", "/src/main/java/com/example/Main.java", "/README", "/src/test/resources" };
+
+		final Random random = new Random(42);
+
+		this.paths = new String[PATH_COUNT];
+
+		for (int i = 0; i < paths.length; i++) {
+			paths[i] = roots[random.nextInt(roots.length)] + files[random.nextInt(files.length)];
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(PATH_COUNT)
+	public void regex(Blackhole blackhole) {
+		for (String path : paths) {
+			blackhole.consume(legacyRootPath(path));
+			blackhole.consume(legacyRootName(path));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(PATH_COUNT)
+	public void singlePass(Blackhole blackhole) {
+		for (String path : paths) {
+			final PathInfo info = PathInfo.parse(path);
+
+			blackhole.consume(info.getRootPath());
+			blackhole.consume(info.getRootName());
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(PATH_COUNT)
+	public void singlePassCached(Blackhole blackhole) {
+		for (String path : paths) {
+			final PathInfo info = PathInfo.get(path);
+
+			blackhole.consume(info.getRootPath());
+			blackhole.consume(info.getRootName());
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(PATH_COUNT)
+	public void utils(Blackhole blackhole) {
+		for (String path : paths) {
+			blackhole.consume(Utils.isBranchPath(path));
+			blackhole.consume(Utils.isTagPath(path));
+			blackhole.consume(Utils.getRootPath(path));
+			blackhole.consume(Utils.getRootName(path));
+		}
+	}
+
+	private static String legacyRootName(String path) {
+		if (path.endsWith("/trunk")) {
+			return "trunk";
+		}
+
+		Matcher matcher = BRANCH_PATTERN.matcher(path);
+
+		if (matcher.matches()) {
+			return matcher.group(1);
+		}
+
+		matcher = TAG_PATTERN.matcher(path);
+
+		if (matcher.matches()) {
+			return matcher.group(1);
+		}
+		if (path.contains("/trunk/")) {
+			return "trunk";
+		}
+
+		matcher = Pattern.compile(".*/(branches|tags)/([^/]+)(/.*)?").matcher(path);
+
+		return matcher.matches() ? matcher.group(2) : null;
+	}
+
+	private static String legacyRootPath(String path) {
+		Matcher matcher = Pattern.compile("(.*/trunk)(/.*)?").matcher(path);
+
+		if (matcher.matches()) {
+			return matcher.group(1);
+		}
+
+		matcher = Pattern.compile("(.*/branches/([^/]+))(/.*)?").matcher(path);
+
+		if (matcher.matches()) {
+			return matcher.group(1);
+		}
+
+		matcher = Pattern.compile("(.*/tags/([^/]+))(/.*)?").matcher(path);
+
+		return matcher.matches() ? matcher.group(1) : null;
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.svngraph;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Base class of the exporters: handles the buffering and the optional gzip
+ * compression of the output.
+ */
+public abstract class AbstractExporter implements GraphExporter {
+
+	static final int BUFFER_SIZE = 64 * 1024;
+
+	// the nodes are numbered in the order of the branches then of the
+	// revisions
+	static final class NodeIds {
+
+		private final Map<String, Integer> offsets = new HashMap<>();
+
+		private final Map<String, long[]> revisions = new HashMap<>();
+
+		NodeIds(BranchGraph graph) {
+			int offset = 0;
+
+			for (String branch : graph.getBranches()) {
+				final long[] array = graph.getRevisions(branch);
+
+				offsets.put(branch, offset);
+				revisions.put(branch, array);
+
+				offset += array.length;
+			}
+		}
+
+		int get(RevisionPath node) {
+			final long[] array = revisions.get(node.getPath());
+			final int index = (array != null) ? Arrays.binarySearch(array, node.getRevision()) : -1;
+
+			if (index < 0) {
+				throw new IllegalArgumentException(String.format("Unknown node %s@%d", node.getPath(), node.getRevision()));
+			}
+
+			return offsets.get(node.getPath()) + index;
+		}
+	}
+
+	private final boolean gzip;
+
+	protected AbstractExporter(boolean gzip) {
+		this.gzip = gzip;
+	}
+
+	@Override
+	public boolean isGzip() {
+		return gzip;
+	}
+
+	@Override
+	public void export(BranchGraph graph, File file) throws IOException {
+		Validate.notNull(graph, "The given graph is null");
+		Validate.notNull(file, "The given file is null");
+
+		final long start = Metrics.getInstance().start();
+
+		OutputStream stream = null;
+
+		try {
+			stream = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE);
+
+			export(graph, stream);
+		} finally {
+			if (stream != null) {
+				stream.close();
+			}
+		}
+
+		Metrics.getInstance().stop("export", start);
+	}
+
+	@Override
+	public void export(BranchGraph graph, OutputStream stream) throws IOException {
+		Validate.notNull(graph, "The given graph is null");
+		Validate.notNull(stream, "The given stream is null");
+
+		if (gzip) {
+			final GZIPOutputStream gzipStream = new GZIPOutputStream(stream, BUFFER_SIZE);
+
+			write(graph, gzipStream);
+
+			gzipStream.finish();
+		} else {
+			write(graph, stream);
+		}
+	}
+
+	// writes the graph to the given stream (flushed but left open)
+	protected abstract void write(BranchGraph graph, OutputStream stream) throws IOException;
+}
@@ -0,0 +1,390 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.svngraph;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Columnar copy of the updates of a history used to compute the activity of
+ * each root directory (trunk, branch or tag): one row per update stored in
+ * primitive arrays (revision, date, author id, root id, action and kind) in
+ * the revision order. The aggregations are computed in a single pass over the
+ * arrays without walking the revisions again.
+ */
+public final class ActivityStore {
+
+	public static final class Activity {
+
+		private final String root;
+
+		private final PathInfo.Kind kind;
+
+		private int commitCount, authorCount, updateCount, fileUpdateCount, addCount, modifyCount, deleteCount;
+
+		private long firstRevision, lastRevision, firstTimestamp, lastTimestamp;
+
+		private Activity(String root, PathInfo.Kind kind) {
+			this.root = root;
+			this.kind = kind;
+		}
+
+		// the path of the root directory (e.g. "/project/branches/foo")
+		public String getRoot() {
+			return root;
+		}
+
+		public PathInfo.Kind getKind() {
+			return kind;
+		}
+
+		// the number of revisions updating the root
+		public int getCommitCount() {
+			return commitCount;
+		}
+
+		// the number of distinct authors of these revisions
+		public int getAuthorCount() {
+			return authorCount;
+		}
+
+		// the number of updates of paths under the root (the churn)
+		public int getUpdateCount() {
+			return updateCount;
+		}
+
+		// the number of updates of files
+		public int getFileUpdateCount() {
+			return fileUpdateCount;
+		}
+
+		public int getAddCount() {
+			return addCount;
+		}
+
+		// the modifications and replacements
+		public int getModifyCount() {
+			return modifyCount;
+		}
+
+		public int getDeleteCount() {
+			return deleteCount;
+		}
+
+		public long getFirstRevision() {
+			return firstRevision;
+		}
+
+		public long getLastRevision() {
+			return lastRevision;
+		}
+
+		public Date getFirstDate() {
+			return new Date(firstTimestamp / 1000);
+		}
+
+		public Date getLastDate() {
+			return new Date(lastTimestamp / 1000);
+		}
+	}
+
+	private static final byte ADD = (byte) Update.Action.ADD.ordinal();
+
+	private static final byte DELETE = (byte) Update.Action.DELETE.ordinal();
+
+	private static final byte FILE = (byte) Update.Kind.FILE.ordinal();
+
+	// the maximum size of the bit set of the (root, author) pairs (8 MB)
+	private static final long MAX_BIT_COUNT = 1L << 26;
+
+	private final long[] revisions, timestamps;
+
+	private final int[] authors;
+
+	// -1 for the updates outside any root directory
+	private final int[] roots;
+
+	private final byte[] actions, kinds;
+
+	private final int size;
+
+	private final String[] authorNames, rootPaths;
+
+	private final PathInfo.Kind[] rootKinds;
+
+	// the revisions must be given in ascending order
+	ActivityStore(Collection<Revision> list) {
+		int count = 0;
+
+		for (Revision revision : list) {
+			count += revision.getUpdates().size();
+		}
+
+		this.size = count;
+		this.revisions = new long[count];
+		this.timestamps = new long[count];
+		this.authors = new int[count];
+		this.roots = new int[count];
+		this.actions = new byte[count];
+		this.kinds = new byte[count];
+
+		final Map<String, Integer> authorIds = new HashMap<>();
+		final Map<String, Integer> rootIds = new HashMap<>();
+		final List<PathInfo.Kind> kindList = new ArrayList<>();
+
+		int row = 0;
+
+		for (Revision revision : list) {
+			final String author = (revision.getAuthor() != null) ? revision.getAuthor() : "";
+
+			Integer authorId = authorIds.get(author);
+
+			if (authorId == null) {
+				authorIds.put(author, authorId = authorIds.size());
+			}
+
+			for (Update update : revision.getUpdates()) {
+				final PathInfo info = update.getPathInfo();
+				final String rootPath = info.getRootPath();
+
+				int rootId = -1;
+
+				if (rootPath != null) {
+					Integer id = rootIds.get(rootPath);
+
+					if (id == null) {
+						rootIds.put(rootPath, id = rootIds.size());
+						kindList.add(info.getKind());
+					}
+
+					rootId = id;
+				}
+
+				revisions[row] = revision.getNumber();
+				timestamps[row] = revision.getTimestamp();
+				authors[row] = authorId;
+				roots[row] = rootId;
+				actions[row] = (byte) update.getAction().ordinal();
+				kinds[row] = (byte) update.getKind().ordinal();
+
+				row++;
+			}
+		}
+
+		this.authorNames = toArray(authorIds);
+		this.rootPaths = toArray(rootIds);
+		this.rootKinds = kindList.toArray(new PathInfo.Kind[kindList.size()]);
+	}
+
+	private static String[] toArray(Map<String, Integer> ids) {
+		final String[] array = new String[ids.size()];
+
+		for (Map.Entry<String, Integer> entry : ids.entrySet()) {
+			array[entry.getValue()] = entry.getKey();
+		}
+
+		return array;
+	}
+
+	public int getUpdateCount() {
+		return size;
+	}
+
+	public int getAuthorCount() {
+		return authorNames.length;
+	}
+
+	public int getRootCount() {
+		return rootPaths.length;
+	}
+
+	/**
+	 * Returns the activity of each root directory sorted by path.
+	 */
+	public List<Activity> getActivities() {
+		return aggregate(0, size);
+	}
+
+	/**
+	 * Returns the activity of each root directory between the given revisions
+	 * (inclusive) sorted by path.
+	 */
+	public List<Activity> getActivities(long from, long to) {
+		Validate.isTrue(from <= to, String.format("Invalid range %d-%d", from, to));
+
+		return aggregate(lowerBound(from), lowerBound(to + 1));
+	}
+
+	// returns the index of the first row whose revision is >= to the given one
+	private int lowerBound(long revision) {
+		int low = 0, high = size;
+
+		while (low < high) {
+			final int middle = (low + high) >>> 1;
+
+			if (revisions[middle] < revision) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+
+		return low;
+	}
+
+	private List<Activity> aggregate(int from, int to) {
+		final int rootCount = rootPaths.length;
+
+		// the counters of each root
+		final int[] commits = new int[rootCount], updates = new int[rootCount], fileUpdates = new int[rootCount];
+		final int[] adds = new int[rootCount], deletes = new int[rootCount], authorCounts = new int[rootCount];
+		final long[] firsts = new long[rootCount], lasts = new long[rootCount];
+		final int[] firstRows = new int[rootCount], lastRows = new int[rootCount];
+
+		Arrays.fill(lasts, -1);
+
+		// the (root, author) pairs already counted: a bit set if small enough
+		// (the common case), a hash set otherwise
+		final long bitCount = (long) rootCount * authorNames.length;
+		final long[] bits = (bitCount <= MAX_BIT_COUNT) ? new long[(int) ((bitCount + 63) >>> 6)] : null;
+		final LongHashSet pairs = (bits == null) ? new LongHashSet(rootCount * 4) : null;
+
+		for (int i = from; i < to; i++) {
+			final int root = roots[i];
+
+			if (root == -1) {
+				continue;
+			}
+
+			// the rows are sorted by revision
+			if (lasts[root] != revisions[i]) {
+				if (lasts[root] == -1) {
+					firsts[root] = revisions[i];
+					firstRows[root] = i;
+				}
+
+				commits[root]++;
+				lasts[root] = revisions[i];
+				lastRows[root] = i;
+			}
+
+			updates[root]++;
+
+			if (kinds[i] == FILE) {
+				fileUpdates[root]++;
+			}
+			if (actions[i] == ADD) {
+				adds[root]++;
+			} else if (actions[i] == DELETE) {
+				deletes[root]++;
+			}
+
+			if (bits != null) {
+				final long bit = (long) root * authorNames.length + authors[i];
+				final int index = (int) (bit >>> 6);
+				final long mask = 1L << bit;
+
+				if ((bits[index] & mask) == 0) {
+					bits[index] |= mask;
+					authorCounts[root]++;
+				}
+			} else if (pairs.add(((long) root << 32) | authors[i])) {
+				authorCounts[root]++;
+			}
+		}
+
+		final List<Activity> list = new ArrayList<>();
+
+		for (int root = 0; root < rootCount; root++) {
+			if (updates[root] == 0) {
+				continue;
+			}
+
+			final Activity activity = new Activity(rootPaths[root], rootKinds[root]);
+			activity.commitCount = commits[root];
+			activity.authorCount = authorCounts[root];
+			activity.updateCount = updates[root];
+			activity.fileUpdateCount = fileUpdates[root];
+			activity.addCount = adds[root];
+			activity.deleteCount = deletes[root];
+			activity.modifyCount = updates[root] - adds[root] - deletes[root];
+			activity.firstRevision = firsts[root];
+			activity.lastRevision = lasts[root];
+			activity.firstTimestamp = timestamps[firstRows[root]];
+			activity.lastTimestamp = timestamps[lastRows[root]];
+
+			list.add(activity);
+		}
+
+		Collections.sort(list, new Comparator<Activity>() {
+			@Override
+			public int compare(Activity o1, Activity o2) {
+				return o1.getRoot().compareTo(o2.getRoot());
+			}
+		});
+
+		return list;
+	}
+
+	/**
+	 * Writes the given activities as CSV (one line per root directory).
+	 */
+	public static void writeCsv(List<Activity> activities, File file) throws IOException {
+		Validate.notNull(activities, "The given list of activities is null");
+		Validate.notNull(file, "The given file is null");
+
+		final SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+		format.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+		Writer writer = null;
+
+		try {
+			writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+			writer.write("root,kind,commits,authors,first revision,last revision,first date,last date,updates,file updates,adds,modifications,deletions\n");
+
+			for (Activity activity : activities) {
+				writer.write(String.format("\"%s\",%s,%d,%d,%d,%d,%s,%s,%d,%d,%d,%d,%d\n",
+						activity.getRoot().replace("\"", "\"\""), activity.getKind(), activity.getCommitCount(),
+						activity.getAuthorCount(), activity.getFirstRevision(), activity.getLastRevision(),
+						format.format(activity.getFirstDate()), format.format(activity.getLastDate()),
+						activity.getUpdateCount(), activity.getFileUpdateCount(), activity.getAddCount(), activity.getModifyCount(),
+						activity.getDeleteCount()));
+			}
+		} finally {
+			if (writer != null) {
+				writer.close();
+			}
+		}
+	}
+}
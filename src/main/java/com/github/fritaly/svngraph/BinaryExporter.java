@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.svngraph;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes a {@link BranchGraph} as a compact binary node / edge list (big
+ * endian, as written by {@link DataOutputStream}):
+ *
+ * <pre>
+ * int    magic ("SVBE")
+ * int    version
+ * int    number of branches
+ * per branch (the string table, the index of a branch is its position):
+ *   UTF  name
+ *   byte kind (ordinal of PathInfo.Kind)
+ *   int  number of nodes
+ *   per node: long revision, long last revision summarized
+ * int    number of copy edges
+ * per edge: int source node, int target node, byte kind (ordinal of
+ *           BranchGraph.CopyEdge.Kind: 0 for a copy, 1 for a merge)
+ * </pre>
+ *
+ * The nodes are numbered in the order of the branches then of the revisions.
+ * The edges chaining the revisions of a branch are implicit.
+ */
+public final class BinaryExporter extends AbstractExporter {
+
+	static final int MAGIC = 0x53564245; // "SVBE"
+
+	// version 2 added the kind of the edges
+	static final int VERSION = 2;
+
+	public BinaryExporter(boolean gzip) {
+		super(gzip);
+	}
+
+	@Override
+	public String getExtension() {
+		return "svbe";
+	}
+
+	@Override
+	protected void write(BranchGraph graph, OutputStream stream) throws IOException {
+		final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(stream, BUFFER_SIZE));
+		output.writeInt(MAGIC);
+		output.writeInt(VERSION);
+		output.writeInt(graph.getBranches().size());
+
+		for (String branch : graph.getBranches()) {
+			final long[] revisions = graph.getRevisions(branch);
+			final long[] ends = graph.getRangeEnds(branch);
+
+			output.writeUTF(branch);
+			output.writeByte(graph.getKind(branch).ordinal());
+			output.writeInt(revisions.length);
+
+			for (int i = 0; i < revisions.length; i++) {
+				output.writeLong(revisions[i]);
+				output.writeLong(ends[i]);
+			}
+		}
+
+		final NodeIds ids = new NodeIds(graph);
+
+		output.writeInt(graph.getEdges().size());
+
+		for (BranchGraph.CopyEdge edge : graph.getEdges()) {
+			output.writeInt(ids.get(edge.getSource()));
+			output.writeInt(ids.get(edge.getTarget()));
+			output.writeByte(edge.getKind().ordinal());
+		}
+
+		output.flush();
+	}
+}
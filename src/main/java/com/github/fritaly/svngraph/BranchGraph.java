@@ -0,0 +1,631 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.svngraph;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.commons.lang.Validate;
+
+import com.github.fritaly.graphml4j.datastructure.Graph;
+import com.github.fritaly.graphml4j.datastructure.Node;
+
+/**
+ * Model of the branch diagram: the revisions of each branch (or tag, or trunk)
+ * worth a node and the copies between them. The model is built incrementally
+ * so that new revisions can be added to a model built (and persisted) by a
+ * previous run.
+ */
+public final class BranchGraph {
+
+	private static final Logger LOGGER = Logger.getLogger(BranchGraph.class.getName());
+
+	public static final class CopyEdge {
+
+		public static enum Kind {
+			// the creation of a branch (or tag, or trunk) from another
+			COPY,
+
+			// the copy of paths from another branch into an existing one
+			MERGE;
+		}
+
+		private final RevisionPath source, target;
+
+		private final Kind kind;
+
+		private CopyEdge(RevisionPath source, RevisionPath target, Kind kind) {
+			this.source = source;
+			this.target = target;
+			this.kind = kind;
+		}
+
+		public RevisionPath getSource() {
+			return source;
+		}
+
+		public RevisionPath getTarget() {
+			return target;
+		}
+
+		public Kind getKind() {
+			return kind;
+		}
+	}
+
+	// the sorted revisions of a branch
+	private static final class RevisionList {
+
+		private long[] values = new long[4];
+
+		// the last revision summarized by each node (only set for a reduced
+		// graph whose nodes can stand for a range of revisions)
+		private long[] ends;
+
+		private int size;
+
+		// the kind of the root directory (trunk, branch or tag)
+		private PathInfo.Kind kind = PathInfo.Kind.OTHER;
+
+		void add(long revision) {
+			// the revisions are mostly added in ascending order
+			if ((size > 0) && (values[size - 1] >= revision)) {
+				final int index = Arrays.binarySearch(values, 0, size, revision);
+
+				if (index >= 0) {
+					return;
+				}
+
+				insert(-(index + 1), revision);
+			} else {
+				insert(size, revision);
+			}
+		}
+
+		private void insert(int index, long revision) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+
+			System.arraycopy(values, index, values, index + 1, size - index);
+
+			values[index] = revision;
+
+			if (ends != null) {
+				ends = Arrays.copyOf(ends, values.length);
+
+				System.arraycopy(ends, index, ends, index + 1, size - index);
+
+				ends[index] = revision;
+			}
+
+			size++;
+		}
+
+		void setEnd(long revision, long end) {
+			final int index = Arrays.binarySearch(values, 0, size, revision);
+
+			Validate.isTrue(index >= 0, String.format("Unknown revision %d", revision));
+
+			if (ends == null) {
+				ends = Arrays.copyOf(values, values.length);
+			}
+
+			ends[index] = end;
+		}
+
+		long[] toArray() {
+			return Arrays.copyOf(values, size);
+		}
+
+		long[] toEndArray() {
+			return Arrays.copyOf((ends != null) ? ends : values, size);
+		}
+	}
+
+	private static final int MAGIC = 0x53564247; // "SVBG"
+
+	// version 2 adds the kind of each branch, version 3 the kind of each edge
+	private static final int VERSION = 3;
+
+	// the number of bits of the root ids and of the revision packed into the
+	// key of a link (see pack())
+	private static final int ROOT_ID_BITS = 20, REVISION_BITS = 24;
+
+	static final int MAX_ROOT_ID = (1 << ROOT_ID_BITS) - 1;
+
+	static final long MAX_PACKED_REVISION = (1L << REVISION_BITS) - 1;
+
+	// the revisions per branch name
+	private final Map<String, RevisionList> revisionsPerBranch = new TreeMap<>();
+
+	private final List<CopyEdge> edges = new ArrayList<>();
+
+	// the number of the last revision added to the graph
+	private long lastRevision = -1;
+
+	// the ids of the roots and the copies already linked by the revision being
+	// added, packed as longs (see link())
+	private final Map<String, Integer> rootIds = new HashMap<>();
+
+	private final LongHashSet links = new LongHashSet();
+
+	public BranchGraph() {
+	}
+
+	public long getLastRevision() {
+		return lastRevision;
+	}
+
+	public int getNodeCount() {
+		int count = 0;
+
+		for (RevisionList revisions : revisionsPerBranch.values()) {
+			count += revisions.size;
+		}
+
+		return count;
+	}
+
+	public List<CopyEdge> getEdges() {
+		return Collections.unmodifiableList(edges);
+	}
+
+	/**
+	 * Returns the names of the branches in alphabetical order.
+	 */
+	public Set<String> getBranches() {
+		return Collections.unmodifiableSet(revisionsPerBranch.keySet());
+	}
+
+	/**
+	 * Returns the sorted revisions of the given branch (empty if the branch
+	 * is unknown).
+	 */
+	public long[] getRevisions(String branch) {
+		final RevisionList revisions = revisionsPerBranch.get(branch);
+
+		return (revisions != null) ? revisions.toArray() : new long[0];
+	}
+
+	/**
+	 * Returns the kind of the root directory of the given branch (OTHER if
+	 * the branch is unknown or was read from a graph persisted without it).
+	 */
+	public PathInfo.Kind getKind(String branch) {
+		final RevisionList revisions = revisionsPerBranch.get(branch);
+
+		return (revisions != null) ? revisions.kind : PathInfo.Kind.OTHER;
+	}
+
+	/**
+	 * Returns the last revision summarized by each node of the given branch
+	 * (in the order of {@link #getRevisions(String)}). The node of a revision
+	 * stands for this revision only unless the graph was reduced by a
+	 * {@link GraphReducer}.
+	 */
+	public long[] getRangeEnds(String branch) {
+		final RevisionList revisions = revisionsPerBranch.get(branch);
+
+		return (revisions != null) ? revisions.toEndArray() : new long[0];
+	}
+
+	/**
+	 * Returns the number of edges of the rendered graph: the copies plus the
+	 * edges chaining the revisions of each branch.
+	 */
+	public int getEdgeCount() {
+		int count = edges.size();
+
+		for (RevisionList revisions : revisionsPerBranch.values()) {
+			count += Math.max(0, revisions.size - 1);
+		}
+
+		return count;
+	}
+
+	// whether a node stands for a range of revisions
+	boolean isReduced() {
+		for (RevisionList revisions : revisionsPerBranch.values()) {
+			if (revisions.ends != null) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	void setRangeEnd(String branch, long revision, long end) {
+		Validate.isTrue(revisionsPerBranch.containsKey(branch), String.format("Unknown branch '%s'", branch));
+		Validate.isTrue(end >= revision, String.format("Invalid range %d-%d", revision, end));
+
+		revisionsPerBranch.get(branch).setEnd(revision, end);
+	}
+
+	void setLastRevision(long lastRevision) {
+		this.lastRevision = lastRevision;
+	}
+
+	void addEdge(RevisionPath source, RevisionPath target, CopyEdge.Kind kind) {
+		edges.add(new CopyEdge(source, target, kind));
+	}
+
+	RevisionPath addNode(String branch, long revision, PathInfo.Kind kind) {
+		RevisionList revisions = revisionsPerBranch.get(branch);
+
+		if (revisions == null) {
+			revisionsPerBranch.put(branch, revisions = new RevisionList());
+		}
+		if (revisions.kind == PathInfo.Kind.OTHER) {
+			// the first kind known wins (the trunks of the modules share the
+			// same name)
+			revisions.kind = kind;
+		}
+
+		revisions.add(revision);
+
+		return new RevisionPath(branch, revision);
+	}
+
+	/**
+	 * Adds the significant revisions of the given history which are more
+	 * recent than the last revision added to the graph. Returns the number of
+	 * significant revisions added.
+	 */
+	public int add(History history) {
+		Validate.notNull(history, "The given history is null");
+
+		final Metrics metrics = Metrics.getInstance();
+
+		final long start = metrics.start();
+
+		final int nodeCount = getNodeCount(), edgeCount = edges.size();
+
+		int count = 0;
+
+		for (Revision revision : history.getSignificantRevisions()) {
+			if (revision.getNumber() > lastRevision) {
+				add(revision);
+
+				count++;
+			}
+		}
+
+		final Revision last = history.getLastRevision();
+
+		if ((last != null) && (last.getNumber() > lastRevision)) {
+			lastRevision = last.getNumber();
+		}
+
+		metrics.stop("graph.build", start);
+		metrics.add("graph.revisions", count);
+		metrics.add("graph.nodes", getNodeCount() - nodeCount);
+		metrics.add("graph.copyEdges", edges.size() - edgeCount);
+
+		return count;
+	}
+
+	// the revisions must be added in ascending order
+	public void add(Revision revision) {
+		Validate.notNull(revision, "The given revision is null");
+
+		if (revision.getNumber() <= lastRevision) {
+			throw new IllegalArgumentException(String.format("The revision %d was already added to the graph",
+					revision.getNumber()));
+		}
+
+		// the output is formatted only if logged
+		final boolean debug = LOGGER.isLoggable(Level.FINE);
+
+		if (debug) {
+			LOGGER.fine(revision.getNumber() + " - " + revision.getMessage());
+		}
+
+		// TODO Render also the deletion of branches
+		// a merge copies many files from the same branch but is rendered as a
+		// single edge: the copies are reduced to the distinct (source root,
+		// target root, source revision) triples
+		links.clear();
+
+		// the updates skipped, added to the metrics once per revision
+		int nullSourceRoots = 0, nullTargetRoots = 0, duplicateCopies = 0;
+
+		for (Update update : revision.getSignificantUpdates()) {
+			if (!update.isCopy()) {
+				if (debug) {
+					LOGGER.fine(String.format("  > %s %s", update.getAction(), update.getPath()));
+				}
+
+				continue;
+			}
+
+			final String sourceRoot = update.getCopySourceInfo().getRootName();
+
+			if (sourceRoot == null) {
+				// skip the revisions whose associated root is
+				// null (happens whether a branch was created
+				// outside the 'branches' directory for
+				// instance)
+				if (debug) {
+					LOGGER.fine(String.format("Skipped an update for revision %d because of a null source root", update.getCopyFromRev()));
+				}
+
+				nullSourceRoots++;
+				continue;
+			}
+
+			final PathInfo targetInfo = update.getPathInfo();
+			final String targetRoot = targetInfo.getRootName();
+
+			if (targetRoot == null) {
+				if (debug) {
+					LOGGER.fine(String.format("Skipped an update for revision %d because of a null target root", revision.getNumber()));
+				}
+
+				nullTargetRoots++;
+				continue;
+			}
+
+			if (!link(sourceRoot, targetRoot, update.getCopyFromRev())) {
+				duplicateCopies++;
+				continue;
+			}
+
+			if (debug) {
+				LOGGER.fine(String.format("  > %s %s from %s@%d", update.getAction(), update.getPath(), update.getCopyFromPath(), update.getCopyFromRev()));
+			}
+
+			// create a node for the source (path, revision)
+			final RevisionPath sourceNode = addNode(sourceRoot, update.getCopyFromRev(), update.getCopySourceInfo().getKind());
+
+			// and another for the newly created directory
+			final RevisionPath targetNode = addNode(targetRoot, revision.getNumber(), targetInfo.getKind());
+
+			// create an edge between the 2 nodes
+			edges.add(new CopyEdge(sourceNode, targetNode, update.isMerge() ? CopyEdge.Kind.MERGE : CopyEdge.Kind.COPY));
+		}
+
+		if ((nullSourceRoots > 0) || (nullTargetRoots > 0) || (duplicateCopies > 0)) {
+			final Metrics metrics = Metrics.getInstance();
+
+			metrics.add("graph.skipped.nullSourceRoot", nullSourceRoots);
+			metrics.add("graph.skipped.nullTargetRoot", nullTargetRoots);
+			metrics.add("graph.skipped.duplicateCopies", duplicateCopies);
+		}
+
+		lastRevision = revision.getNumber();
+	}
+
+	// records a copy between the given roots by the revision being added and
+	// returns whether it's the first one
+	private boolean link(String sourceRoot, String targetRoot, long sourceRevision) {
+		final int sourceId = getRootId(sourceRoot), targetId = getRootId(targetRoot);
+
+		if (!canPack(sourceId, targetId, sourceRevision)) {
+			// can't be packed into a long, the copy is kept
+			return true;
+		}
+
+		return links.add(pack(sourceId, targetId, sourceRevision));
+	}
+
+	static boolean canPack(int sourceId, int targetId, long sourceRevision) {
+		return (sourceId >= 0) && (sourceId <= MAX_ROOT_ID) && (targetId >= 0) && (targetId <= MAX_ROOT_ID)
+				&& (sourceRevision >= 0) && (sourceRevision <= MAX_PACKED_REVISION);
+	}
+
+	// packs a (source root, target root, source revision) triple into a long:
+	// 20 bits per root id and 24 bits for the revision
+	static long pack(int sourceId, int targetId, long sourceRevision) {
+		// the messages are only formatted on failure (called for every copy)
+		if (!canPack(sourceId, targetId, sourceRevision)) {
+			throw new IllegalArgumentException(String.format("Can't pack the root ids %d, %d and the revision %d",
+					sourceId, targetId, sourceRevision));
+		}
+
+		return ((long) sourceId << (ROOT_ID_BITS + REVISION_BITS)) | ((long) targetId << REVISION_BITS) | sourceRevision;
+	}
+
+	private int getRootId(String root) {
+		Integer id = rootIds.get(root);
+
+		if (id == null) {
+			rootIds.put(root, id = rootIds.size());
+		}
+
+		return id;
+	}
+
+	/**
+	 * Converts the model into a graph whose nodes are grouped per branch and
+	 * chained in the revision order.
+	 */
+	public Graph toGraph() {
+		final Graph graph = new Graph();
+
+		// index of the nodes created, graph.getNodeByData() is a linear search
+		final Map<RevisionPath, Node> nodes = new HashMap<>(getNodeCount() * 2);
+
+		// the nodes of each branch in the revision order
+		final Map<String, Node[]> nodesPerBranch = new HashMap<>(revisionsPerBranch.size() * 2);
+
+		for (Map.Entry<String, RevisionList> entry : revisionsPerBranch.entrySet()) {
+			final long[] revisions = entry.getValue().toArray();
+			final Node[] branchNodes = new Node[revisions.length];
+
+			for (int i = 0; i < revisions.length; i++) {
+				final RevisionPath data = new RevisionPath(entry.getKey(), revisions[i]);
+
+				nodes.put(data, branchNodes[i] = graph.addNode(data));
+			}
+
+			nodesPerBranch.put(entry.getKey(), branchNodes);
+		}
+
+		for (CopyEdge edge : edges) {
+			graph.addEdge(null, nodes.get(edge.getSource()), nodes.get(edge.getTarget()));
+		}
+
+		// Recreate the missing edges between revisions from a same branch and group nodes per branch
+		for (String branchName : revisionsPerBranch.keySet()) {
+			final Node[] branchNodes = nodesPerBranch.get(branchName);
+
+			final Node branchNode = graph.addNode(branchName);
+
+			for (int i = 0; i < branchNodes.length - 1; i++) {
+				final Node sourceNode = branchNodes[i];
+				final Node targetNode = branchNodes[i + 1];
+
+				sourceNode.setParent(branchNode);
+				targetNode.setParent(branchNode);
+
+				graph.addEdge(null, sourceNode, targetNode);
+			}
+		}
+
+		return graph;
+	}
+
+	public void write(File file) throws IOException {
+		Validate.notNull(file, "The given file is null");
+		Validate.isTrue(!isReduced(), "A reduced graph can't be persisted");
+
+		// write to a temporary file renamed once complete so that a reader
+		// never sees a partial graph
+		final File tempFile = new File(file.getAbsolutePath() + ".tmp");
+
+		DataOutputStream stream = null;
+
+		try {
+			stream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+			stream.writeInt(MAGIC);
+			stream.writeInt(VERSION);
+			stream.writeLong(lastRevision);
+			stream.writeInt(revisionsPerBranch.size());
+
+			for (Map.Entry<String, RevisionList> entry : revisionsPerBranch.entrySet()) {
+				final RevisionList revisions = entry.getValue();
+
+				stream.writeUTF(entry.getKey());
+				stream.writeByte(revisions.kind.ordinal());
+				stream.writeInt(revisions.size);
+
+				for (int i = 0; i < revisions.size; i++) {
+					stream.writeLong(revisions.values[i]);
+				}
+			}
+
+			stream.writeInt(edges.size());
+
+			for (CopyEdge edge : edges) {
+				stream.writeUTF(edge.getSource().getPath());
+				stream.writeLong(edge.getSource().getRevision());
+				stream.writeUTF(edge.getTarget().getPath());
+				stream.writeLong(edge.getTarget().getRevision());
+				stream.writeByte(edge.getKind().ordinal());
+			}
+		} finally {
+			if (stream != null) {
+				stream.close();
+			}
+		}
+
+		// the previous graph is replaced atomically, a crash leaves either the
+		// previous or the new graph
+		Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+				StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	public static BranchGraph read(File file) throws IOException {
+		Validate.notNull(file, "The given file is null");
+
+		DataInputStream stream = null;
+
+		try {
+			stream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+			if (stream.readInt() != MAGIC) {
+				throw new IOException(String.format("The file '%s' isn't a branch graph", file.getAbsolutePath()));
+			}
+
+			final int version = stream.readInt();
+
+			if ((version < 1) || (version > VERSION)) {
+				throw new IOException(String.format("Unsupported branch graph version %d (Expected: %d)", version, VERSION));
+			}
+
+			final BranchGraph graph = new BranchGraph();
+			graph.lastRevision = stream.readLong();
+
+			final int branchCount = stream.readInt();
+
+			for (int i = 0; i < branchCount; i++) {
+				final String branch = stream.readUTF();
+				final PathInfo.Kind kind = (version > 1) ? PathInfo.Kind.values()[stream.readByte()] : PathInfo.Kind.OTHER;
+				final int revisionCount = stream.readInt();
+
+				for (int j = 0; j < revisionCount; j++) {
+					graph.addNode(branch, stream.readLong(), kind);
+				}
+			}
+
+			final int edgeCount = stream.readInt();
+
+			for (int i = 0; i < edgeCount; i++) {
+				final RevisionPath source = new RevisionPath(stream.readUTF(), stream.readLong());
+				final RevisionPath target = new RevisionPath(stream.readUTF(), stream.readLong());
+
+				final CopyEdge.Kind kind;
+
+				if (version > 2) {
+					kind = CopyEdge.Kind.values()[stream.readByte()];
+				} else {
+					// the copies create the branches, the others are merges
+					final boolean first = graph.revisionsPerBranch.get(target.getPath()).values[0] == target.getRevision();
+
+					kind = first ? CopyEdge.Kind.COPY : CopyEdge.Kind.MERGE;
+				}
+
+				graph.edges.add(new CopyEdge(source, target, kind));
+			}
+
+			return graph;
+		} finally {
+			if (stream != null) {
+				stream.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.svngraph;
+
+import java.awt.Color;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.github.fritaly.graphml4j.EdgeStyle;
+import com.github.fritaly.graphml4j.GroupStyles;
+import com.github.fritaly.graphml4j.NodeStyle;
+
+/**
+ * Deterministic styles of a branch diagram. The fill color of the nodes of a
+ * branch is derived from a hash of its name within a range of hues depending
+ * on its kind (trunk, branch or tag) so that the same log is always rendered
+ * the same way. The styles are shared between the nodes and must not be
+ * modified once returned.
+ */
+final class BranchStyles {
+
+	static final NodeStyle GROUP_NODE_STYLE = new NodeStyle();
+
+	static final GroupStyles GROUP_STYLES = new GroupStyles();
+
+	static final EdgeStyle EDGE_STYLE = new EdgeStyle();
+
+	private static final Color TRUNK_COLOR = new Color(0x4A, 0x90, 0xD9);
+
+	// the node styles per kind and name
+	private final Map<String, NodeStyle> nodeStyles = new HashMap<>();
+
+	NodeStyle getNodeStyle(PathInfo.Kind kind, String name) {
+		final String key = kind.ordinal() + name;
+
+		NodeStyle style = nodeStyles.get(key);
+
+		if (style == null) {
+			style = new NodeStyle();
+			style.setFillColor(getColor(kind, name));
+
+			nodeStyles.put(key, style);
+		}
+
+		return style;
+	}
+
+	static Color getColor(PathInfo.Kind kind, String name) {
+		if (kind == PathInfo.Kind.TRUNK) {
+			return TRUNK_COLOR;
+		}
+
+		// String.hashCode() is specified, the finalizer of MurmurHash3 spreads
+		// the close names (e.g. "1.0" and "1.1") over the palette
+		int hash = name.hashCode();
+		hash ^= hash >>> 16;
+		hash *= 0x85EBCA6B;
+		hash ^= hash >>> 13;
+		hash *= 0xC2B2AE35;
+		hash ^= hash >>> 16;
+
+		final float x = (hash & 0xFFFF) / 65536f, y = ((hash >>> 16) & 0xFF) / 256f;
+
+		switch (kind) {
+		case BRANCH:
+			// greens to cyans
+			return Color.getHSBColor(0.22f + x * 0.3f, 0.35f + y * 0.3f, 0.9f);
+		case TAG:
+			// oranges to yellows
+			return Color.getHSBColor(0.05f + x * 0.11f, 0.45f + y * 0.3f, 1f);
+		default:
+			// greys
+			final int level = 160 + (int) (x * 64);
+
+			return new Color(level, level, level);
+		}
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.svngraph;
+
+import java.awt.Color;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Writes a {@link BranchGraph} as a Graphviz DOT digraph: one cluster per
+ * branch filled with the colors of {@link BranchStyles}, then the copy edges
+ * and the edges chaining the revisions of each branch. The nodes are streamed
+ * without building any intermediate graph.
+ */
+public final class DotExporter extends AbstractExporter {
+
+	public DotExporter(boolean gzip) {
+		super(gzip);
+	}
+
+	@Override
+	public String getExtension() {
+		return "dot";
+	}
+
+	@Override
+	protected void write(BranchGraph graph, OutputStream stream) throws IOException {
+		final Writer writer = new BufferedWriter(new OutputStreamWriter(stream, "UTF-8"), BUFFER_SIZE);
+
+		writer.write("digraph svn {\n  node [shape=box, style=filled];\n");
+
+		int id = 0, cluster = 0;
+
+		for (String branch : graph.getBranches()) {
+			final long[] revisions = graph.getRevisions(branch);
+			final long[] ends = graph.getRangeEnds(branch);
+			final String color = toHex(BranchStyles.getColor(graph.getKind(branch), branch));
+
+			writer.write("  subgraph cluster_");
+			writer.write(Integer.toString(cluster++));
+			writer.write(" {\n    label=");
+			writer.write(ExportUtils.quoteDot(branch));
+			writer.write(";\n");
+
+			for (int i = 0; i < revisions.length; i++) {
+				writer.write("    n");
+				writer.write(Integer.toString(id++));
+				writer.write(" [label=");
+				writer.write(ExportUtils.quoteDot(GraphMLExporter.getLabel(new RevisionPath(branch, revisions[i]), ends[i])));
+				writer.write(", fillcolor=\"");
+				writer.write(color);
+				writer.write("\"];\n");
+			}
+
+			writer.write("  }\n");
+		}
+
+		final NodeIds ids = new NodeIds(graph);
+
+		for (BranchGraph.CopyEdge edge : graph.getEdges()) {
+			writeEdge(writer, ids.get(edge.getSource()), ids.get(edge.getTarget()));
+		}
+
+		// the edges between the consecutive revisions of a branch
+		id = 0;
+
+		for (String branch : graph.getBranches()) {
+			final int count = graph.getRevisions(branch).length;
+
+			for (int i = 0; i < count - 1; i++) {
+				writeEdge(writer, id + i, id + i + 1);
+			}
+
+			id += count;
+		}
+
+		writer.write("}\n");
+		writer.flush();
+	}
+
+	private static void writeEdge(Writer writer, int source, int target) throws IOException {
+		writer.write("  n");
+		writer.write(Integer.toString(source));
+		writer.write(" -> n");
+		writer.write(Integer.toString(target));
+		writer.write(";\n");
+	}
+
+	private static String toHex(Color color) {
+		return String.format("#%02x%02x%02x", color.getRed(), color.getGreen(), color.getBlue());
+	}
+}
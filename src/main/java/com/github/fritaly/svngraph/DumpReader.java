@@ -0,0 +1,473 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.svngraph;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Reads the revisions of an 'svnadmin dump' file. Only the headers of the
+ * records and the properties of the revisions are read, the contents of the
+ * nodes (properties and text) are skipped by moving the position of the file
+ * channel so the memory consumed doesn't depend on the size of the contents.
+ */
+final class DumpReader {
+
+	private static final Logger LOGGER = Logger.getLogger(DumpReader.class.getName());
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final String MAGIC = "SVN-fs-dump-format-version:";
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final FileChannel channel;
+
+	private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+	// the bytes of the line being read
+	private byte[] line = new byte[256];
+
+	// the dictionary of the paths of the dump
+	private final PathDictionary dictionary = new PathDictionary();
+
+	// the maximum number of copies followed to infer the kind of a node
+	private static final int MAX_COPY_DEPTH = 32;
+
+	// the ids of the paths known to be directories (with their parents), used
+	// to infer the kind of the deleted nodes (the dump doesn't give it)
+	private final BitSet directories = new BitSet();
+
+	// the id of the source of the last copy of each directory
+	private final Map<Integer, Integer> copySources = new HashMap<>();
+
+	// the offset of the record being read. The error messages give it rather
+	// than the content of the dump
+	private long recordOffset;
+
+	private DumpReader(FileChannel channel) {
+		this.channel = channel;
+
+		// the buffer is initially empty
+		buffer.flip();
+	}
+
+	// tells whether the given file is a dump file
+	static boolean isDump(File file) throws IOException {
+		Validate.notNull(file, "The given file is null");
+
+		FileInputStream stream = null;
+
+		try {
+			stream = new FileInputStream(file);
+
+			final byte[] bytes = new byte[MAGIC.length()];
+
+			int count = 0, n = 0;
+
+			while ((count < bytes.length) && ((n = stream.read(bytes, count, bytes.length - count)) != -1)) {
+				count += n;
+			}
+
+			return (count == bytes.length) && MAGIC.equals(new String(bytes, UTF_8));
+		} finally {
+			if (stream != null) {
+				stream.close();
+			}
+		}
+	}
+
+	static History read(File file) throws IOException, ParseException {
+		Validate.notNull(file, "The given file is null");
+
+		FileInputStream stream = null;
+
+		try {
+			stream = new FileInputStream(file);
+
+			final History history = new History(new DumpReader(stream.getChannel()).readRevisions());
+
+			LOGGER.info(String.format("Parsed %d revisions from dump", history.getRevisionCount()));
+
+			return history;
+		} finally {
+			if (stream != null) {
+				stream.close();
+			}
+		}
+	}
+
+	private List<Revision> readRevisions() throws IOException, ParseException {
+		final List<Revision> revisions = new ArrayList<>();
+
+		// the revision being read
+		long number = -1;
+
+		Map<String, String> properties = null;
+
+		List<Update> updates = null;
+
+		Map<String, String> headers;
+
+		while ((headers = readHeaders()) != null) {
+			final long propLength = getLength(headers, "Prop-content-length");
+			final long textLength = getLength(headers, "Text-content-length");
+
+			long contentLength = getLength(headers, "Content-length");
+
+			if (contentLength == -1) {
+				contentLength = Math.max(propLength, 0) + Math.max(textLength, 0);
+			}
+
+			if (headers.containsKey("Revision-number")) {
+				if (number > 0) {
+					revisions.add(createRevision(number, properties, updates));
+				}
+
+				number = parseNumber(headers.get("Revision-number"));
+				properties = (propLength > 0) ? readProperties(propLength) : new HashMap<String, String>();
+				updates = new ArrayList<>();
+
+				skip(contentLength - Math.max(propLength, 0));
+			} else if (headers.containsKey("Node-path")) {
+				if (updates == null) {
+					throw new IOException("Found a node before the first revision");
+				}
+
+				updates.add(createUpdate(headers, textLength != -1));
+
+				// the contents of the node aren't needed
+				skip(contentLength);
+			} else {
+				// e.g. the format version or the UUID of the repository
+				skip(contentLength);
+			}
+		}
+
+		// the revision 0 only defines the creation date of the repository
+		if (number > 0) {
+			revisions.add(createRevision(number, properties, updates));
+		}
+
+		return revisions;
+	}
+
+	private static Revision createRevision(long number, Map<String, String> properties, List<Update> updates)
+			throws ParseException {
+
+		final String date = properties.get("svn:date");
+
+		if (date == null) {
+			throw new IllegalArgumentException(String.format("The revision %d doesn't define any date", number));
+		}
+
+		final long timestamp;
+
+		try {
+			timestamp = Timestamps.parse(date);
+		} catch (ParseException e) {
+			throw new ParseException(String.format("Invalid date for the revision %d", number), 0);
+		}
+
+		return new Revision(number, properties.get("svn:author"), timestamp, properties.get("svn:log"), updates);
+	}
+
+	private Update createUpdate(Map<String, String> headers, boolean textMods) throws IOException {
+		// the paths are relative to the root of the repository in a dump
+		final String path = "/" + headers.get("Node-path");
+		final String action = headers.get("Node-action");
+		final String kind = headers.get("Node-kind");
+
+		final Update.Action nodeAction;
+
+		if ("add".equals(action)) {
+			nodeAction = Update.Action.ADD;
+		} else if ("delete".equals(action)) {
+			nodeAction = Update.Action.DELETE;
+		} else if ("change".equals(action)) {
+			nodeAction = Update.Action.MODIFY;
+		} else if ("replace".equals(action)) {
+			nodeAction = Update.Action.REPLACE;
+		} else {
+			throw new IOException(String.format("Invalid node action in the record at offset %d", recordOffset));
+		}
+
+		final String copyFromPath = headers.get("Node-copyfrom-path");
+		final String copyFromRev = headers.get("Node-copyfrom-rev");
+
+		final int pathId = dictionary.intern(path);
+
+		// the parent of a node is a directory
+		setDirectory(dictionary.getParent(pathId));
+
+		final Update.Kind nodeKind;
+
+		if (kind != null) {
+			nodeKind = "dir".equals(kind) ? Update.Kind.DIR : Update.Kind.FILE;
+
+			if (nodeKind == Update.Kind.DIR) {
+				setDirectory(pathId);
+
+				if (copyFromPath != null) {
+					copySources.put(pathId, dictionary.intern("/" + copyFromPath));
+				} else {
+					copySources.remove(pathId);
+				}
+			}
+		} else {
+			nodeKind = isDirectory(pathId) ? Update.Kind.DIR : Update.Kind.FILE;
+		}
+
+		// 'text-mods' in the log: the node comes with a text content
+		return new Update(nodeKind, nodeAction, path, (copyFromPath != null) ? "/" + copyFromPath : null,
+				(copyFromRev != null) ? parseNumber(copyFromRev) : -1, textMods && (nodeKind == Update.Kind.FILE),
+				dictionary);
+	}
+
+	// marks the given path and its parents as directories
+	private void setDirectory(int id) {
+		while ((id > 0) && !directories.get(id)) {
+			directories.set(id);
+
+			id = dictionary.getParent(id);
+		}
+	}
+
+	// tells whether the given path is known to be a directory. A path never
+	// seen under a copied directory (e.g. '/archive/b1' after 'svn cp
+	// ^/branches ^/archive') is looked up under the source of the copy
+	private boolean isDirectory(int id) {
+		for (int depth = 0; depth < MAX_COPY_DEPTH; depth++) {
+			if (directories.get(id)) {
+				return true;
+			}
+
+			// the closest copied parent
+			int parent = dictionary.getParent(id);
+
+			while ((parent > 0) && !copySources.containsKey(parent)) {
+				parent = dictionary.getParent(parent);
+			}
+
+			if (parent <= 0) {
+				return false;
+			}
+
+			final String path = dictionary.getPath(id);
+			final String relativePath = path.substring(dictionary.getPath(parent).length());
+
+			id = dictionary.intern(dictionary.getPath(copySources.get(parent)) + relativePath);
+		}
+
+		return false;
+	}
+
+	private long getLength(Map<String, String> headers, String name) throws IOException {
+		final String value = headers.get(name);
+
+		return (value != null) ? parseNumber(value) : -1;
+	}
+
+	private long parseNumber(String value) throws IOException {
+		try {
+			return Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			throw new IOException(String.format("Invalid number in the record at offset %d", recordOffset));
+		}
+	}
+
+	// the offset in the file of the next byte to read
+	private long getPosition() throws IOException {
+		return channel.position() - buffer.remaining();
+	}
+
+	// reads the headers of the next record (null at the end of the file)
+	private Map<String, String> readHeaders() throws IOException {
+		String line;
+
+		// skip the blank lines between the records
+		do {
+			recordOffset = getPosition();
+			line = readLine();
+
+			if (line == null) {
+				return null;
+			}
+		} while (line.isEmpty());
+
+		final Map<String, String> headers = new HashMap<>();
+
+		while ((line != null) && !line.isEmpty()) {
+			final int index = line.indexOf(": ");
+
+			if (index == -1) {
+				throw new IOException(String.format("Invalid header line in the record at offset %d", recordOffset));
+			}
+
+			headers.put(line.substring(0, index), line.substring(index + 2));
+
+			line = readLine();
+		}
+
+		return headers;
+	}
+
+	// reads the properties ('K <length>' / 'V <length>' pairs) of a revision
+	private Map<String, String> readProperties(long length) throws IOException {
+		final byte[] bytes = readBytes((int) length);
+
+		final Map<String, String> properties = new HashMap<>();
+
+		int index = 0;
+
+		while (index < bytes.length) {
+			final int end = indexOf(bytes, index, (byte) '\n');
+			final String line = new String(bytes, index, end - index, UTF_8);
+
+			index = end + 1;
+
+			if ("PROPS-END".equals(line)) {
+				break;
+			}
+			if (!line.startsWith("K ")) {
+				throw new IOException(String.format("Invalid property line in the record at offset %d", recordOffset));
+			}
+
+			final int keyLength = (int) parseNumber(line.substring(2));
+			final String key = new String(bytes, index, keyLength, UTF_8);
+
+			index += keyLength + 1;
+
+			final int valueEnd = indexOf(bytes, index, (byte) '\n');
+			final String valueLine = new String(bytes, index, valueEnd - index, UTF_8);
+
+			if (!valueLine.startsWith("V ")) {
+				throw new IOException(String.format("Invalid property line in the record at offset %d", recordOffset));
+			}
+
+			final int valueLength = (int) parseNumber(valueLine.substring(2));
+
+			index = valueEnd + 1;
+
+			properties.put(key, new String(bytes, index, valueLength, UTF_8));
+
+			index += valueLength + 1;
+		}
+
+		return properties;
+	}
+
+	private static int indexOf(byte[] bytes, int from, byte value) throws IOException {
+		for (int i = from; i < bytes.length; i++) {
+			if (bytes[i] == value) {
+				return i;
+			}
+		}
+
+		throw new IOException("Truncated properties");
+	}
+
+	private boolean fill() throws IOException {
+		buffer.compact();
+
+		final int count = channel.read(buffer);
+
+		buffer.flip();
+
+		return (count > 0);
+	}
+
+	// reads a line ending with '\n' (null at the end of the file)
+	private String readLine() throws IOException {
+		int length = 0;
+
+		while (true) {
+			if (!buffer.hasRemaining() && !fill()) {
+				return (length == 0) ? null : new String(line, 0, length, UTF_8);
+			}
+
+			final byte b = buffer.get();
+
+			if (b == '\n') {
+				return new String(line, 0, length, UTF_8);
+			}
+
+			if (length == line.length) {
+				line = Arrays.copyOf(line, line.length * 2);
+			}
+
+			line[length++] = b;
+		}
+	}
+
+	private byte[] readBytes(int count) throws IOException {
+		final byte[] bytes = new byte[count];
+
+		int offset = 0;
+
+		while (offset < count) {
+			if (!buffer.hasRemaining() && !fill()) {
+				throw new IOException("Unexpected end of dump");
+			}
+
+			final int n = Math.min(buffer.remaining(), count - offset);
+
+			buffer.get(bytes, offset, n);
+			offset += n;
+		}
+
+		return bytes;
+	}
+
+	// skips the given number of bytes without reading them
+	private void skip(long count) throws IOException {
+		if (count <= 0) {
+			return;
+		}
+
+		if (count <= buffer.remaining()) {
+			buffer.position(buffer.position() + (int) count);
+			return;
+		}
+
+		// the bytes left in the buffer precede the position of the channel
+		final long target = channel.position() - buffer.remaining() + count;
+
+		if (target > channel.size()) {
+			throw new IOException("Unexpected end of dump");
+		}
+
+		channel.position(target);
+
+		buffer.clear();
+		buffer.flip();
+	}
+}
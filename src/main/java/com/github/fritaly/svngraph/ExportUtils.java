@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.svngraph;
+
+/**
+ * Helpers shared by the exporters writing text formats.
+ */
+final class ExportUtils {
+
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private ExportUtils() {
+	}
+
+	/**
+	 * Quotes the given text as a JSON string literal. The quotes, the
+	 * backslashes and the control characters are escaped so that a branch
+	 * name can't break the structure of the output.
+	 */
+	static String quote(String text) {
+		final StringBuilder builder = new StringBuilder(text.length() + 2);
+		builder.append('"');
+
+		for (int i = 0; i < text.length(); i++) {
+			final char c = text.charAt(i);
+
+			switch (c) {
+			case '"':
+				builder.append("\\\"");
+				break;
+			case '\\':
+				builder.append("\\\\");
+				break;
+			case '\n':
+				builder.append("\\n");
+				break;
+			case '\r':
+				builder.append("\\r");
+				break;
+			case '\t':
+				builder.append("\\t");
+				break;
+			default:
+				if ((c < 0x20) || (c == 0x7F)) {
+					builder.append("\\u00").append(HEX_DIGITS[c >> 4]).append(HEX_DIGITS[c & 0xF]);
+				} else {
+					builder.append(c);
+				}
+			}
+		}
+
+		return builder.append('"').toString();
+	}
+
+	/**
+	 * Quotes the given text as a DOT string literal. DOT only defines the
+	 * escaping of the quotes (a backslash followed by another character being
+	 * an escape sequence of the labels like "\n") so the backslashes are
+	 * doubled and the control characters, which have no escape sequence, are
+	 * replaced by spaces.
+	 */
+	static String quoteDot(String text) {
+		final StringBuilder builder = new StringBuilder(text.length() + 2);
+		builder.append('"');
+
+		for (int i = 0; i < text.length(); i++) {
+			final char c = text.charAt(i);
+
+			if ((c == '"') || (c == '\\')) {
+				builder.append('\\').append(c);
+			} else if ((c < 0x20) || (c == 0x7F)) {
+				builder.append(' ');
+			} else {
+				builder.append(c);
+			}
+		}
+
+		return builder.append('"').toString();
+	}
+}
@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.svngraph;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.lang.Validate;
+
+import com.github.fritaly.graphml4j.GraphMLException;
+import com.github.fritaly.graphml4j.GraphMLWriter;
+import com.github.fritaly.graphml4j.NodeStyle;
+
+/**
+ * Writes a {@link BranchGraph} as GraphML without building an intermediate
+ * graphml4j graph: the groups, nodes and edges are streamed to a buffered
+ * UTF-8 writer (optionally compressed with gzip). The output is equivalent to
+ * the one of {@link BranchGraph#toGraph()} rendered by SvnGraph's renderer.
+ */
+public final class GraphMLExporter extends AbstractExporter {
+
+	public GraphMLExporter(boolean gzip) {
+		super(gzip);
+	}
+
+	@Override
+	public String getExtension() {
+		return "graphml";
+	}
+
+	@Override
+	protected void write(BranchGraph graph, OutputStream stream) throws IOException {
+		final Writer writer = new OutputStreamWriter(stream, "UTF-8");
+
+		try {
+			export(graph, writer);
+		} catch (GraphMLException e) {
+			throw new IOException(e);
+		}
+
+		writer.flush();
+	}
+
+	public void export(BranchGraph graph, Writer writer) throws GraphMLException {
+		Validate.notNull(graph, "The given graph is null");
+		Validate.notNull(writer, "The given writer is null");
+
+		final GraphMLWriter graphWriter = new GraphMLWriter(writer);
+		graphWriter.setGroupStyles(BranchStyles.GROUP_STYLES);
+		graphWriter.setEdgeStyle(BranchStyles.EDGE_STYLE);
+		graphWriter.graph();
+
+		final BranchStyles styles = new BranchStyles();
+
+		// the ids of the nodes written, needed to write the edges afterwards
+		final Map<RevisionPath, String> ids = new HashMap<>(graph.getNodeCount() * 2);
+
+		// the ids of the nodes of each branch in the revision order
+		final Map<String, String[]> idsPerBranch = new HashMap<>();
+
+		for (String branch : graph.getBranches()) {
+			final long[] revisions = graph.getRevisions(branch);
+			final long[] ends = graph.getRangeEnds(branch);
+			final String[] branchIds = new String[revisions.length];
+
+			// one color per branch
+			final NodeStyle nodeStyle = styles.getNodeStyle(graph.getKind(branch), branch);
+
+			graphWriter.setNodeStyle(nodeStyle);
+
+			// like BranchGraph.toGraph(), a revision alone on its branch isn't
+			// grouped and its group is left empty
+			final boolean grouped = (revisions.length > 1);
+
+			if (!grouped) {
+				final RevisionPath data = new RevisionPath(branch, revisions[0]);
+
+				ids.put(data, branchIds[0] = graphWriter.node(getLabel(data, ends[0])));
+			}
+
+			graphWriter.setNodeStyle(BranchStyles.GROUP_NODE_STYLE);
+			graphWriter.group(branch, true);
+
+			if (grouped) {
+				graphWriter.setNodeStyle(nodeStyle);
+
+				for (int i = 0; i < revisions.length; i++) {
+					final RevisionPath data = new RevisionPath(branch, revisions[i]);
+
+					ids.put(data, branchIds[i] = graphWriter.node(getLabel(data, ends[i])));
+				}
+			}
+
+			graphWriter.closeGroup();
+
+			idsPerBranch.put(branch, branchIds);
+		}
+
+		for (BranchGraph.CopyEdge edge : graph.getEdges()) {
+			graphWriter.edge(ids.get(edge.getSource()), ids.get(edge.getTarget()));
+		}
+
+		// the edges between the consecutive revisions of a branch
+		for (String branch : graph.getBranches()) {
+			final String[] branchIds = idsPerBranch.get(branch);
+
+			for (int i = 0; i < branchIds.length - 1; i++) {
+				graphWriter.edge(branchIds[i], branchIds[i + 1]);
+			}
+		}
+
+		graphWriter.closeGraph();
+	}
+
+	static String getLabel(RevisionPath data, long end) {
+		final StringBuilder builder = new StringBuilder(data.getPath().length() + 16);
+		builder.append(data.getPath()).append('@').append(data.getRevision());
+
+		if (end != data.getRevision()) {
+			// node summarizing a range of revisions
+			builder.append('-').append(end);
+		}
+
+		return builder.toString();
+	}
+}
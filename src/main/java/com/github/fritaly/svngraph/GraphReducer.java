@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.svngraph;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Reduces the size of a {@link BranchGraph} before rendering it. Branches (or
+ * tags) can be pruned when inactive for a given number of revisions or when
+ * they have too few nodes, and the runs of consecutive nodes of a branch
+ * without any copy from or to another branch can be collapsed into a single
+ * node standing for the range of revisions. The trunks are never pruned.
+ */
+public final class GraphReducer {
+
+	private static final String TRUNK = "trunk";
+
+	// whether to collapse the runs of nodes without copy edges
+	private boolean collapseChains;
+
+	// the number of revisions after which an inactive branch is pruned (-1
+	// to disable)
+	private long maxAge = -1;
+
+	// the minimum number of nodes of a branch not to be pruned
+	private int minActivity;
+
+	public GraphReducer() {
+	}
+
+	public GraphReducer setCollapseChains(boolean collapseChains) {
+		this.collapseChains = collapseChains;
+
+		return this;
+	}
+
+	public GraphReducer setMaxAge(long maxAge) {
+		Validate.isTrue(maxAge >= -1, String.format("Invalid maximum age %d", maxAge));
+
+		this.maxAge = maxAge;
+
+		return this;
+	}
+
+	public GraphReducer setMinActivity(int minActivity) {
+		Validate.isTrue(minActivity >= 0, String.format("Invalid minimum activity %d", minActivity));
+
+		this.minActivity = minActivity;
+
+		return this;
+	}
+
+	/**
+	 * Returns a reduced copy of the given graph (which isn't modified).
+	 */
+	public BranchGraph reduce(BranchGraph graph) {
+		Validate.notNull(graph, "The given graph is null");
+
+		// the branches kept
+		final Set<String> branches = new HashSet<>();
+
+		for (String branch : graph.getBranches()) {
+			if (TRUNK.equals(branch)) {
+				branches.add(branch);
+				continue;
+			}
+
+			final long[] revisions = graph.getRevisions(branch);
+
+			if (revisions.length < minActivity) {
+				continue;
+			}
+			if ((maxAge >= 0) && (revisions[revisions.length - 1] < graph.getLastRevision() - maxAge)) {
+				continue;
+			}
+
+			branches.add(branch);
+		}
+
+		final BranchGraph result = new BranchGraph();
+		result.setLastRevision(graph.getLastRevision());
+
+		// the nodes with a copy from or to another branch can't be collapsed
+		final Set<RevisionPath> linked = new HashSet<>();
+
+		for (BranchGraph.CopyEdge edge : graph.getEdges()) {
+			if (branches.contains(edge.getSource().getPath()) && branches.contains(edge.getTarget().getPath())) {
+				result.addEdge(edge.getSource(), edge.getTarget(), edge.getKind());
+
+				linked.add(edge.getSource());
+				linked.add(edge.getTarget());
+			}
+		}
+
+		for (String branch : graph.getBranches()) {
+			if (!branches.contains(branch)) {
+				continue;
+			}
+
+			final long[] revisions = graph.getRevisions(branch);
+			final long[] ends = graph.getRangeEnds(branch);
+
+			if (!collapseChains) {
+				for (int i = 0; i < revisions.length; i++) {
+					result.addNode(branch, revisions[i], graph.getKind(branch));
+
+					if (ends[i] != revisions[i]) {
+						result.setRangeEnd(branch, revisions[i], ends[i]);
+					}
+				}
+
+				continue;
+			}
+
+			int i = 0;
+
+			while (i < revisions.length) {
+				result.addNode(branch, revisions[i], graph.getKind(branch));
+
+				if (linked.contains(new RevisionPath(branch, revisions[i]))) {
+					if (ends[i] != revisions[i]) {
+						result.setRangeEnd(branch, revisions[i], ends[i]);
+					}
+
+					i++;
+					continue;
+				}
+
+				// extend the run while the nodes aren't linked
+				int j = i;
+
+				while ((j + 1 < revisions.length) && !linked.contains(new RevisionPath(branch, revisions[j + 1]))) {
+					j++;
+				}
+
+				if (ends[j] != revisions[i]) {
+					result.setRangeEnd(branch, revisions[i], ends[j]);
+				}
+
+				i = j + 1;
+			}
+		}
+
+		return result;
+	}
+}
@@ -16,15 +16,30 @@
  */
 package com.github.fritaly.svngraph;
 
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.logging.Logger;
 
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpressionException;
@@ -39,60 +54,312 @@ import org.w3c.dom.NodeList;
 // TODO add unit tests based on svn log of a public open source project
 public final class History {
 
-	private final Map<Long, Revision> revisions = new TreeMap<>();
+	private static final Logger LOGGER = Logger.getLogger(History.class.getName());
 
-	private History(Collection<Revision> collection) {
+	// the revisions per number. This can be a view of the revisions of
+	// another history (see getRevisionRange() and getDateRange())
+	private final NavigableMap<Long, Revision> revisions;
+
+	// the number of revisions (the size of a sub-map isn't computed in
+	// constant time)
+	private final int count;
+
+	// the revision numbers and timestamps in the revision order
+	private static final class TimeIndex {
+
+		final long[] numbers, timestamps;
+
+		// whether the timestamps increase with the revision numbers (which
+		// should be the case unless the dates were edited)
+		final boolean sorted;
+
+		TimeIndex(Collection<Revision> revisions) {
+			this.numbers = new long[revisions.size()];
+			this.timestamps = new long[revisions.size()];
+
+			int i = 0;
+
+			boolean sorted = true;
+
+			for (Revision revision : revisions) {
+				numbers[i] = revision.getNumber();
+				timestamps[i] = revision.getTimestamp();
+
+				if ((i > 0) && (timestamps[i] < timestamps[i - 1])) {
+					sorted = false;
+				}
+
+				i++;
+			}
+
+			this.sorted = sorted;
+		}
+	}
+
+	// the following views are derived from the (immutable) revisions and are
+	// lazily computed only once
+
+	private volatile TimeIndex timeIndex;
+
+	// index used to find the revisions updating a given path without scanning
+	// the whole history
+	private volatile PathIndex index;
+
+	private volatile Set<String> rootPaths;
+
+	private volatile List<Revision> significantRevisions;
+
+	private volatile ActivityStore activityStore;
+
+	History(Collection<Revision> collection) {
 		Validate.notNull(collection, "The given collection of revisions is null");
 
+		this.revisions = new TreeMap<>();
+
 		for (Revision revision : collection) {
 			this.revisions.put(revision.getNumber(), revision);
 		}
+
+		this.count = revisions.size();
+	}
+
+	// view of the given revisions (not copied)
+	private History(NavigableMap<Long, Revision> revisions, int count) {
+		this.revisions = revisions;
+		this.count = count;
 	}
 
 	public History(Document document) throws XPathExpressionException, ParseException {
 		Validate.notNull(document, "The given document is null");
 
+		this.revisions = new TreeMap<>();
+
 		final XPath xpath = XPathFactory.newInstance().newXPath();
 
+		final PathDictionary dictionary = new PathDictionary();
+
 		NodeList nodes = (NodeList) xpath.evaluate("/log/logentry", document.getDocumentElement(), XPathConstants.NODESET);
 
 		for (int i = 0; i < nodes.getLength(); i++) {
-			final Revision revision = new Revision((Element) nodes.item(i));
+			final Revision revision = new Revision((Element) nodes.item(i), dictionary);
 
 			revisions.put(revision.getNumber(), revision);
 		}
 
-		System.out.println(String.format("Parsed %d revisions", revisions.size()));
+		this.count = revisions.size();
+
+		LOGGER.info(String.format("Parsed %d revisions", count));
+	}
+
+	// streaming alternative to the DOM-based constructor: the revisions are
+	// created one 'logentry' at a time so the memory consumed only depends on
+	// the size of the resulting model
+	public History(XMLStreamReader reader) throws XMLStreamException, ParseException {
+		Validate.notNull(reader, "The given XML stream reader is null");
+
+		this.revisions = new TreeMap<>();
+
+		final PathDictionary dictionary = new PathDictionary();
+
+		while (reader.hasNext()) {
+			if ((reader.next() == XMLStreamConstants.START_ELEMENT) && "logentry".equals(reader.getLocalName())) {
+				final Revision revision = new Revision(reader, null, -1, -1, dictionary);
+
+				revisions.put(revision.getNumber(), revision);
+			}
+		}
+
+		this.count = revisions.size();
+
+		LOGGER.info(String.format("Parsed %d revisions", count));
+	}
+
+	// parses the given 'svn log --xml -v' output
+	public static History parse(File file) throws IOException, XMLStreamException, ParseException {
+		return parse(file, 1);
+	}
+
+	private static History parseSequentially(File file) throws IOException, XMLStreamException, ParseException {
+		InputStream inputStream = null;
+
+		try {
+			inputStream = new BufferedInputStream(new FileInputStream(file));
+
+			final XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(inputStream);
+
+			try {
+				return new History(reader);
+			} finally {
+				reader.close();
+			}
+		} finally {
+			if (inputStream != null) {
+				inputStream.close();
+			}
+		}
+	}
+
+	// parses the given log using the given number of threads
+	public static History parse(File file, int parallelism) throws IOException, XMLStreamException, ParseException {
+		return parse(file, parallelism, false);
+	}
+
+	/**
+	 * Parses the given log using the given number of threads. If lazyMessages
+	 * is true, the commit messages aren't kept in memory but read from the log
+	 * file when requested (which requires the file to remain unchanged).
+	 */
+	public static History parse(File file, int parallelism, boolean lazyMessages) throws IOException, XMLStreamException,
+			ParseException {
+
+		Validate.notNull(file, "The given file is null");
+		Validate.isTrue(parallelism > 0, String.format("Invalid parallelism %d", parallelism));
+
+		final Metrics metrics = Metrics.getInstance();
+
+		final long start = metrics.start();
+
+		final History history;
+
+		if ((parallelism == 1) && !lazyMessages) {
+			history = parseSequentially(file);
+		} else {
+			// the offsets of the messages are given by the chunks of the
+			// parallel parser
+			history = new ParallelLogParser(parallelism, lazyMessages).parse(file);
+		}
+
+		final long elapsed = metrics.stop("parse", start);
+
+		metrics.add("parse.revisions", history.getRevisionCount());
+		metrics.add("parse.bytes", file.length());
+		metrics.rate("parse.revisionsPerSecond", history.getRevisionCount(), elapsed);
+
+		return history;
+	}
+
+	/**
+	 * Parses the given 'svnadmin dump' file. The contents of the files aren't
+	 * read so the dump can be much larger than the available memory.
+	 */
+	public static History parseDump(File file) throws IOException, ParseException {
+		Validate.notNull(file, "The given file is null");
+
+		final Metrics metrics = Metrics.getInstance();
+
+		final long start = metrics.start();
+
+		final History history = DumpReader.read(file);
+
+		final long elapsed = metrics.stop("parse", start);
+
+		metrics.add("parse.revisions", history.getRevisionCount());
+		metrics.add("parse.bytes", file.length());
+		metrics.rate("parse.revisionsPerSecond", history.getRevisionCount(), elapsed);
+
+		return history;
 	}
 
 	public int getRevisionCount() {
-		return revisions.size();
+		return count;
 	}
 
 	public List<Revision> getRevisions() {
 		return new ArrayList<>(revisions.values());
 	}
 
-	public History getHistory(String path) {
-		Validate.notNull(path, "The given path is null");
+	/**
+	 * Returns a rough estimate of the memory retained by the revisions and the
+	 * dictionaries of their paths, in bytes. The indexes built lazily aren't
+	 * taken into account.
+	 */
+	long getEstimatedSize() {
+		final Set<PathDictionary> dictionaries = Collections.newSetFromMap(new IdentityHashMap<PathDictionary, Boolean>());
 
-		final List<Revision> list = new ArrayList<>();
+		long size = 0;
 
 		for (Revision revision : revisions.values()) {
-			if (revision.isOnPath(path)) {
-				list.add(revision);
+			size += revision.getEstimatedSize();
+
+			for (Update update : revision.getUpdates()) {
+				dictionaries.add(update.getDictionary());
 			}
 		}
 
+		for (PathDictionary dictionary : dictionaries) {
+			size += dictionary.getEstimatedSize();
+		}
+
+		return size;
+	}
+
+	/**
+	 * Closes the log file the messages of this history are read from on demand
+	 * (if parsed with lazy messages). The file is reopened if a message is
+	 * requested afterwards.
+	 */
+	public void closeMessages() throws IOException {
+		final Set<MessageStore> stores = Collections.newSetFromMap(new IdentityHashMap<MessageStore, Boolean>());
+
+		for (Revision revision : revisions.values()) {
+			if ((revision.getMessageStore() != null) && stores.add(revision.getMessageStore())) {
+				revision.getMessageStore().close();
+			}
+		}
+	}
+
+	public History getHistory(String path) {
+		Validate.notNull(path, "The given path is null");
+
+		final long[] numbers = getIndex().getRevisions(path);
+
+		final List<Revision> list = new ArrayList<>(numbers.length);
+
+		for (long number : numbers) {
+			list.add(revisions.get(number));
+		}
+
 		return new History(list);
 	}
 
+	private PathIndex getIndex() {
+		PathIndex result = index;
+
+		if (result == null) {
+			synchronized (this) {
+				result = index;
+
+				if (result == null) {
+					index = result = new PathIndex(revisions.values());
+				}
+			}
+		}
+
+		return result;
+	}
+
 	public Set<String> getRootPaths() {
+		Set<String> result = rootPaths;
+
+		if (result == null) {
+			synchronized (this) {
+				result = rootPaths;
+
+				if (result == null) {
+					rootPaths = result = Collections.unmodifiableSet(computeRootPaths());
+				}
+			}
+		}
+
+		return result;
+	}
+
+	private Set<String> computeRootPaths() {
 		final Set<String> set = new TreeSet<>();
 
 		for (Revision revision : revisions.values()) {
 			for (Update update : revision.getUpdates()) {
-				final String path = Utils.getRootPath(update.getPath());
+				final String path = update.getPathInfo().getRootPath();
 
 				if (path != null) {
 					set.add(path);
@@ -113,15 +380,266 @@ public final class History {
 		return revisions.get(new Long(revision));
 	}
 
+	// returns the most recent revision (null if the history is empty)
+	public Revision getLastRevision() {
+		return revisions.isEmpty() ? null : revisions.lastEntry().getValue();
+	}
+
+	/**
+	 * Returns a new history with the revisions of this history and the given
+	 * one (typically the output of 'svn log --xml -v -r N:HEAD'). A revision
+	 * present in both histories is taken from the given one.
+	 */
+	public History merge(History other) {
+		Validate.notNull(other, "The given history is null");
+
+		final Map<Long, Revision> map = new TreeMap<>(this.revisions);
+		map.putAll(other.revisions);
+
+		return new History(map.values());
+	}
+
+	private TimeIndex getTimeIndex() {
+		TimeIndex result = timeIndex;
+
+		if (result == null) {
+			synchronized (this) {
+				result = timeIndex;
+
+				if (result == null) {
+					timeIndex = result = new TimeIndex(revisions.values());
+				}
+			}
+		}
+
+		return result;
+	}
+
+	// returns the index of the first element of the given sorted array greater
+	// than (or equal to if inclusive) the given value
+	private static int lowerBound(long[] array, long value, boolean inclusive) {
+		int index = Arrays.binarySearch(array, value);
+
+		if (index < 0) {
+			return -(index + 1);
+		}
+
+		// the values are unique for the revision numbers but not necessarily
+		// for the timestamps
+		if (inclusive) {
+			while ((index > 0) && (array[index - 1] == value)) {
+				index--;
+			}
+		} else {
+			while ((index < array.length) && (array[index] == value)) {
+				index++;
+			}
+		}
+
+		return index;
+	}
+
+	/**
+	 * Returns a view of the revisions of this history whose number is between
+	 * the given bounds (inclusive). The view is created in O(log n) without
+	 * copying the revisions.
+	 */
+	public History getRevisionRange(long from, long to) {
+		Validate.isTrue(from <= to, String.format("Invalid revision range %d-%d", from, to));
+
+		final long[] numbers = getTimeIndex().numbers;
+
+		final int start = lowerBound(numbers, from, true);
+		final int end = lowerBound(numbers, to, false);
+
+		return new History(revisions.subMap(from, true, to, true), end - start);
+	}
+
+	// converts the given number of milliseconds into microseconds (plus the
+	// given number of microseconds), saturated to the range of a long so that
+	// an open-ended range (e.g. up to new Date(Long.MAX_VALUE)) doesn't overflow
+	private static long toMicros(long millis, long micros) {
+		if (millis >= Long.MAX_VALUE / 1000) {
+			return Long.MAX_VALUE;
+		}
+		if (millis <= Long.MIN_VALUE / 1000) {
+			return Long.MIN_VALUE;
+		}
+
+		return (millis * 1000) + micros;
+	}
+
+	/**
+	 * Returns a view of the revisions of this history committed between the
+	 * given dates (inclusive). The view is created in O(log n) without copying
+	 * the revisions unless the dates of the history aren't in the revision
+	 * order.
+	 */
+	public History getDateRange(Date from, Date to) {
+		Validate.notNull(from, "The given start date is null");
+		Validate.notNull(to, "The given end date is null");
+		Validate.isTrue(!from.after(to), String.format("Invalid date range %s-%s", from, to));
+
+		// the timestamps are in microseconds
+		final long start = toMicros(from.getTime(), 0), end = toMicros(to.getTime(), 999);
+
+		final TimeIndex index = getTimeIndex();
+
+		if (!index.sorted) {
+			final List<Revision> list = new ArrayList<>();
+
+			for (Revision revision : revisions.values()) {
+				if ((revision.getTimestamp() >= start) && (revision.getTimestamp() <= end)) {
+					list.add(revision);
+				}
+			}
+
+			return new History(list);
+		}
+
+		final int first = lowerBound(index.timestamps, start, true);
+		final int last = lowerBound(index.timestamps, end, false) - 1;
+
+		if (first > last) {
+			return new History(Collections.<Revision> emptyList());
+		}
+
+		return new History(revisions.subMap(index.numbers[first], true, index.numbers[last], true), last - first + 1);
+	}
+
+	/**
+	 * Partitions this history per module (see {@link Utils#getModule(String)})
+	 * and returns the history of each module sorted by the path of the module
+	 * (e.g. "/project/core"), two modules with the same name in different
+	 * directories being distinct. A revision updating several modules is split
+	 * into one revision per module. The updates outside of any module are
+	 * ignored.
+	 */
+	public Map<String, History> partitionByModule() {
+		final Map<String, List<Revision>> lists = new TreeMap<>();
+
+		for (Revision revision : revisions.values()) {
+			final List<Update> updates = revision.getUpdates();
+
+			// most revisions only update one module and are shared as is
+			String module = null;
+
+			boolean split = false;
+
+			for (Update update : updates) {
+				final String name = update.getPathInfo().getModulePath();
+
+				if ((name == null) || ((module != null) && !module.equals(name))) {
+					split = true;
+					break;
+				}
+
+				module = name;
+			}
+
+			if (!split) {
+				if (module != null) {
+					getList(lists, module).add(revision);
+				}
+
+				continue;
+			}
+
+			final Map<String, List<Update>> updatesPerModule = new TreeMap<>();
+
+			for (Update update : updates) {
+				final String name = update.getPathInfo().getModulePath();
+
+				if (name != null) {
+					List<Update> list = updatesPerModule.get(name);
+
+					if (list == null) {
+						updatesPerModule.put(name, list = new ArrayList<>());
+					}
+
+					list.add(update);
+				}
+			}
+
+			for (Map.Entry<String, List<Update>> entry : updatesPerModule.entrySet()) {
+				getList(lists, entry.getKey()).add(new Revision(revision, entry.getValue()));
+			}
+		}
+
+		final Map<String, History> result = new TreeMap<>();
+
+		for (Map.Entry<String, List<Revision>> entry : lists.entrySet()) {
+			result.put(entry.getKey(), new History(entry.getValue()));
+		}
+
+		return result;
+	}
+
+	private static List<Revision> getList(Map<String, List<Revision>> lists, String module) {
+		List<Revision> list = lists.get(module);
+
+		if (list == null) {
+			lists.put(module, list = new ArrayList<>());
+		}
+
+		return list;
+	}
+
+	/**
+	 * Returns the columnar copy of the updates used to compute the activity
+	 * of each trunk, branch and tag (built on the first call).
+	 */
+	public ActivityStore getActivityStore() {
+		ActivityStore result = activityStore;
+
+		if (result == null) {
+			synchronized (this) {
+				result = activityStore;
+
+				if (result == null) {
+					final long start = Metrics.getInstance().start();
+
+					activityStore = result = new ActivityStore(revisions.values());
+
+					Metrics.getInstance().stop("activity.build", start);
+				}
+			}
+		}
+
+		return result;
+	}
+
 	public List<Revision> getSignificantRevisions() {
+		List<Revision> result = significantRevisions;
+
+		if (result == null) {
+			synchronized (this) {
+				result = significantRevisions;
+
+				if (result == null) {
+					significantRevisions = result = Collections.unmodifiableList(computeSignificantRevisions());
+				}
+			}
+		}
+
+		return result;
+	}
+
+	private List<Revision> computeSignificantRevisions() {
 		final List<Revision> list = new ArrayList<>();
 
+		int updateCount = 0;
+
 		for (Revision revision : revisions.values()) {
 			if (revision.isSignificant()) {
 				list.add(revision);
 			}
+
+			updateCount += revision.getUpdates().size();
 		}
 
+		Metrics.getInstance().add("updates.classified", updateCount);
+
 		return list;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,368 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.svngraph;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Binary snapshot of a {@link History}. The paths, authors and messages are
+ * stored once in a string table and referenced by index. A snapshot is only
+ * valid for the exact log file (same length and modification date) it was
+ * created from, unless written without any log file (when the history is
+ * built incrementally from several logs). When read, the strings are decoded
+ * from the memory-mapped snapshot on first use and the messages are only
+ * decoded when requested.
+ *
+ * <pre>
+ * header: magic (int), version (int), source length (long), source last modified (long), CRC32 of the body (long)
+ * body:   string count (int), strings (length (int) + UTF-8 bytes)
+ *         revision count (int), revisions (number (long), author (int), timestamp in micros (long), message (int), update count (int), updates)
+ *         update: flags (byte), path (int), copy-from path (int), copy-from revision (long)
+ * </pre>
+ */
+public final class HistorySnapshot {
+
+	private static final Logger LOGGER = Logger.getLogger(HistorySnapshot.class.getName());
+
+	private static final int MAGIC = 0x53564E47; // "SVNG"
+
+	// to be incremented whenever the format changes
+	private static final int VERSION = 2;
+
+	private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 8;
+
+	private static final int NULL_STRING = -1;
+
+	// source length and last modified date of a snapshot not bound to a log file
+	private static final long UNBOUND = -1;
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private HistorySnapshot() {
+	}
+
+	/**
+	 * Loads the history from the given snapshot if it's valid for the given
+	 * log file. Otherwise the log file is parsed and the snapshot (re)created.
+	 */
+	public static History load(File logFile, File snapshotFile) throws IOException, XMLStreamException, ParseException {
+		return load(logFile, snapshotFile, 1);
+	}
+
+	// same as load(File, File) but the log file is parsed with the given
+	// number of threads
+	public static History load(File logFile, File snapshotFile, int parallelism) throws IOException, XMLStreamException,
+			ParseException {
+		Validate.notNull(logFile, "The given log file is null");
+		Validate.notNull(snapshotFile, "The given snapshot file is null");
+
+		if (snapshotFile.exists()) {
+			try {
+				final long start = Metrics.getInstance().start();
+
+				final History history = read(snapshotFile, logFile);
+
+				Metrics.getInstance().stop("snapshot.read", start);
+
+				return history;
+			} catch (IOException e) {
+				LOGGER.warning(String.format("Ignored the snapshot '%s': %s", snapshotFile.getAbsolutePath(), e.getMessage()));
+			} catch (RuntimeException e) {
+				// thrown when the snapshot is corrupt in a way the checksum
+				// didn't detect (unlikely)
+				LOGGER.warning(String.format("Ignored the snapshot '%s': %s", snapshotFile.getAbsolutePath(), e));
+			}
+
+			Metrics.getInstance().increment("snapshot.ignored");
+		}
+
+		final History history = DumpReader.isDump(logFile) ? History.parseDump(logFile) : History.parse(logFile, parallelism);
+
+		try {
+			write(history, snapshotFile, logFile);
+		} catch (IOException e) {
+			// the snapshot only saves the parsing of the next run
+			LOGGER.warning(String.format("Unable to write the snapshot '%s': %s", snapshotFile.getAbsolutePath(),
+					e.getMessage()));
+		}
+
+		return history;
+	}
+
+	// the log file can be null if the snapshot isn't bound to a log file
+	public static void write(History history, File file, File logFile) throws IOException {
+		Validate.notNull(history, "The given history is null");
+		Validate.notNull(file, "The given file is null");
+
+		final List<Revision> revisions = history.getRevisions();
+
+		// build the string table
+		final Map<String, Integer> strings = new LinkedHashMap<>();
+
+		for (Revision revision : revisions) {
+			register(strings, revision.getAuthor());
+			register(strings, revision.getMessage());
+
+			for (Update update : revision.getUpdates()) {
+				register(strings, update.getPath());
+				register(strings, update.getCopyFromPath());
+			}
+		}
+
+		// write to a temporary file renamed once complete so that a reader
+		// never sees a partial snapshot
+		final File tempFile = new File(file.getAbsolutePath() + ".tmp");
+
+		final CRC32 checksum = new CRC32();
+
+		FileOutputStream fileStream = null;
+		DataOutputStream stream = null;
+
+		try {
+			fileStream = new FileOutputStream(tempFile);
+
+			// the checksum is only known at the end, the header is rewritten
+			// afterwards
+			fileStream.write(new byte[HEADER_SIZE]);
+
+			stream = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(fileStream, checksum), 65536));
+			stream.writeInt(strings.size());
+
+			for (String string : strings.keySet()) {
+				final byte[] bytes = string.getBytes(UTF_8);
+
+				stream.writeInt(bytes.length);
+				stream.write(bytes);
+			}
+
+			stream.writeInt(revisions.size());
+
+			for (Revision revision : revisions) {
+				stream.writeLong(revision.getNumber());
+				stream.writeInt(indexOf(strings, revision.getAuthor()));
+				stream.writeLong(revision.getTimestamp());
+				stream.writeInt(indexOf(strings, revision.getMessage()));
+				stream.writeInt(revision.getUpdates().size());
+
+				for (Update update : revision.getUpdates()) {
+					stream.writeByte(update.getFlags());
+					stream.writeInt(indexOf(strings, update.getPath()));
+					stream.writeInt(indexOf(strings, update.getCopyFromPath()));
+					stream.writeLong(update.getCopyFromRev());
+				}
+			}
+		} finally {
+			if (stream != null) {
+				stream.close();
+			} else if (fileStream != null) {
+				fileStream.close();
+			}
+		}
+
+		RandomAccessFile randomAccessFile = null;
+
+		try {
+			randomAccessFile = new RandomAccessFile(tempFile, "rw");
+			randomAccessFile.writeInt(MAGIC);
+			randomAccessFile.writeInt(VERSION);
+			randomAccessFile.writeLong((logFile != null) ? logFile.length() : UNBOUND);
+			randomAccessFile.writeLong((logFile != null) ? logFile.lastModified() : UNBOUND);
+			randomAccessFile.writeLong(checksum.getValue());
+		} finally {
+			if (randomAccessFile != null) {
+				randomAccessFile.close();
+			}
+		}
+
+		// replaces the previous snapshot (if any) in a single step
+		Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+				StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Reads the given snapshot through a memory-mapped buffer. Throws an
+	 * {@link IOException} if the snapshot is stale (created from another
+	 * version of the given log file), corrupt or has an unsupported version.
+	 * The staleness check is skipped if the given log file is null.
+	 */
+	public static History read(File file, File logFile) throws IOException {
+		Validate.notNull(file, "The given file is null");
+
+		RandomAccessFile randomAccessFile = null;
+
+		try {
+			randomAccessFile = new RandomAccessFile(file, "r");
+
+			final FileChannel channel = randomAccessFile.getChannel();
+
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("The snapshot is too large to be memory-mapped");
+			}
+			if (channel.size() < HEADER_SIZE) {
+				throw new IOException("The snapshot is truncated");
+			}
+
+			final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+			if (buffer.getInt() != MAGIC) {
+				throw new IOException("The file isn't a snapshot");
+			}
+
+			final int version = buffer.getInt();
+
+			if (version != VERSION) {
+				throw new IOException(String.format("Unsupported snapshot version %d (Expected: %d)", version, VERSION));
+			}
+			final long sourceLength = buffer.getLong();
+			final long sourceLastModified = buffer.getLong();
+
+			if ((logFile != null) && ((sourceLength != logFile.length()) || (sourceLastModified != logFile.lastModified()))) {
+				throw new IOException("The snapshot is stale");
+			}
+
+			final long expectedChecksum = buffer.getLong();
+
+			if (checksum(buffer.slice()) != expectedChecksum) {
+				throw new IOException("The snapshot is corrupt (checksum mismatch)");
+			}
+
+			// the location of each string, decoded on first use
+			final int stringCount = buffer.getInt();
+			final int[] offsets = new int[stringCount], lengths = new int[stringCount];
+
+			for (int i = 0; i < stringCount; i++) {
+				lengths[i] = buffer.getInt();
+				offsets[i] = buffer.position();
+
+				buffer.position(offsets[i] + lengths[i]);
+			}
+
+			final String[] strings = new String[stringCount];
+
+			// the messages are read from the mapped buffer when requested
+			// (it remains valid once the file is closed)
+			final MessageStore messages = new MessageStore(buffer);
+
+			final int revisionCount = buffer.getInt();
+
+			final List<Revision> revisions = new ArrayList<>(revisionCount);
+
+			final PathDictionary dictionary = new PathDictionary();
+
+			for (int i = 0; i < revisionCount; i++) {
+				final long number = buffer.getLong();
+				final String author = getString(buffer, strings, offsets, lengths, buffer.getInt());
+				final long timestamp = buffer.getLong();
+				final int message = buffer.getInt();
+				final int updateCount = buffer.getInt();
+
+				final List<Update> updates = new ArrayList<>(updateCount);
+
+				for (int j = 0; j < updateCount; j++) {
+					final byte flags = buffer.get();
+					final String path = getString(buffer, strings, offsets, lengths, buffer.getInt());
+					final String copyFromPath = getString(buffer, strings, offsets, lengths, buffer.getInt());
+					final long copyFromRev = buffer.getLong();
+
+					updates.add(new Update(Update.Kind.values()[flags & 0x01], Update.Action.values()[(flags >> 1) & 0x03],
+							path, copyFromPath, copyFromRev, (flags & 0x08) != 0, dictionary));
+				}
+
+				if (message != NULL_STRING) {
+					revisions.add(new Revision(number, author, timestamp, messages, offsets[message], lengths[message],
+							updates));
+				} else {
+					revisions.add(new Revision(number, author, timestamp, null, updates));
+				}
+			}
+
+			LOGGER.info(String.format("Loaded %d revisions from snapshot", revisions.size()));
+
+			return new History(revisions);
+		} finally {
+			if (randomAccessFile != null) {
+				randomAccessFile.close();
+			}
+		}
+	}
+
+	private static long checksum(ByteBuffer buffer) {
+		final CRC32 checksum = new CRC32();
+
+		final byte[] bytes = new byte[65536];
+
+		while (buffer.hasRemaining()) {
+			final int length = Math.min(bytes.length, buffer.remaining());
+
+			buffer.get(bytes, 0, length);
+			checksum.update(bytes, 0, length);
+		}
+
+		return checksum.getValue();
+	}
+
+	private static void register(Map<String, Integer> strings, String string) {
+		if ((string != null) && !strings.containsKey(string)) {
+			strings.put(string, strings.size());
+		}
+	}
+
+	private static int indexOf(Map<String, Integer> strings, String string) {
+		return (string != null) ? strings.get(string).intValue() : NULL_STRING;
+	}
+
+	// the string with the given index, decoded from the given buffer on first
+	// use
+	private static String getString(ByteBuffer buffer, String[] strings, int[] offsets, int[] lengths, int index) {
+		if (index == NULL_STRING) {
+			return null;
+		}
+		if (strings[index] == null) {
+			final byte[] bytes = new byte[lengths[index]];
+			final ByteBuffer duplicate = buffer.duplicate();
+
+			duplicate.position(offsets[index]);
+			duplicate.get(bytes);
+
+			strings[index] = new String(bytes, UTF_8);
+		}
+
+		return strings[index];
+	}
+}
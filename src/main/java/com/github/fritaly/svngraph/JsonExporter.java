@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.svngraph;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ * Writes a {@link BranchGraph} as newline-delimited JSON: one object per
+ * node, e.g. {"type":"node","id":0,"branch":"trunk","kind":"TRUNK",
+ * "revision":12,"end":12}, then one object per edge, e.g.
+ * {"type":"edge","source":0,"target":1,"kind":"copy"}. The kind of an edge is
+ * "copy" (creation of a branch), "merge" (paths copied into an existing
+ * branch) or "chain" (edge chaining the revisions of a branch).
+ */
+public final class JsonExporter extends AbstractExporter {
+
+	public JsonExporter(boolean gzip) {
+		super(gzip);
+	}
+
+	@Override
+	public String getExtension() {
+		return "ndjson";
+	}
+
+	@Override
+	protected void write(BranchGraph graph, OutputStream stream) throws IOException {
+		final Writer writer = new BufferedWriter(new OutputStreamWriter(stream, "UTF-8"), BUFFER_SIZE);
+
+		int id = 0;
+
+		for (String branch : graph.getBranches()) {
+			final long[] revisions = graph.getRevisions(branch);
+			final long[] ends = graph.getRangeEnds(branch);
+
+			// the beginning of the objects is the same for the whole branch
+			final String prefix = ",\"branch\":" + ExportUtils.quote(branch) + ",\"kind\":\"" + graph.getKind(branch)
+					+ "\",\"revision\":";
+
+			for (int i = 0; i < revisions.length; i++) {
+				writer.write("{\"type\":\"node\",\"id\":");
+				writer.write(Integer.toString(id++));
+				writer.write(prefix);
+				writer.write(Long.toString(revisions[i]));
+				writer.write(",\"end\":");
+				writer.write(Long.toString(ends[i]));
+				writer.write("}\n");
+			}
+		}
+
+		final NodeIds ids = new NodeIds(graph);
+
+		for (BranchGraph.CopyEdge edge : graph.getEdges()) {
+			writeEdge(writer, ids.get(edge.getSource()), ids.get(edge.getTarget()),
+					edge.getKind().name().toLowerCase(Locale.ENGLISH));
+		}
+
+		id = 0;
+
+		for (String branch : graph.getBranches()) {
+			final int count = graph.getRevisions(branch).length;
+
+			for (int i = 0; i < count - 1; i++) {
+				writeEdge(writer, id + i, id + i + 1, "chain");
+			}
+
+			id += count;
+		}
+
+		writer.flush();
+	}
+
+	private static void writeEdge(Writer writer, int source, int target, String kind) throws IOException {
+		writer.write("{\"type\":\"edge\",\"source\":");
+		writer.write(Integer.toString(source));
+		writer.write(",\"target\":");
+		writer.write(Integer.toString(target));
+		writer.write(",\"kind\":\"");
+		writer.write(kind);
+		writer.write("\"}\n");
+	}
+}
@@ -0,0 +1,366 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.svngraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Answers the lineage queries on a {@link BranchGraph} (where a branch was cut
+ * from, which branches descend from another...). Each node of the graph has a
+ * primary parent: the previous revision of its branch or, for the first node
+ * of a branch, the source of the copy which created the branch. The resulting
+ * forest is indexed once (binary lifting for the common ancestors, Euler tour
+ * for the ancestor / descendant tests) so that the queries run in logarithmic
+ * time.
+ */
+public final class Lineage {
+
+	private final RevisionPath[] nodes;
+
+	// the index of each node in the array above
+	private final Map<RevisionPath, Integer> indices;
+
+	// the indices of the nodes of each branch in the revision order
+	private final Map<String, int[]> branches = new HashMap<>();
+
+	// ancestors[k][i] is the 2^k-th ancestor of the node i (-1 if none)
+	private final int[][] ancestors;
+
+	private final int[] depths;
+
+	// the entry and exit times of each node in the depth-first traversal
+	private final int[] entries, exits;
+
+	// the branches sorted by the entry time of their first node
+	private final String[] branchesByEntry;
+
+	private final int[] branchEntries;
+
+	public Lineage(BranchGraph graph) {
+		Validate.notNull(graph, "The given graph is null");
+
+		// the parents have a lower revision than their children (the source
+		// of a copy precedes its target), sorting the nodes by revision
+		// ensures the parents are indexed first
+		final List<RevisionPath> list = new ArrayList<>(graph.getNodeCount());
+
+		for (String branch : graph.getBranches()) {
+			for (long revision : graph.getRevisions(branch)) {
+				list.add(new RevisionPath(branch, revision));
+			}
+		}
+
+		Collections.sort(list, new Comparator<RevisionPath>() {
+			@Override
+			public int compare(RevisionPath o1, RevisionPath o2) {
+				if (o1.getRevision() != o2.getRevision()) {
+					return (o1.getRevision() < o2.getRevision()) ? -1 : 1;
+				}
+
+				return o1.getPath().compareTo(o2.getPath());
+			}
+		});
+
+		this.nodes = list.toArray(new RevisionPath[list.size()]);
+		this.indices = new HashMap<>(nodes.length * 2);
+
+		for (int i = 0; i < nodes.length; i++) {
+			indices.put(nodes[i], i);
+		}
+
+		for (String branch : graph.getBranches()) {
+			final long[] revisions = graph.getRevisions(branch);
+			final int[] array = new int[revisions.length];
+
+			for (int i = 0; i < revisions.length; i++) {
+				array[i] = indices.get(new RevisionPath(branch, revisions[i]));
+			}
+
+			branches.put(branch, array);
+		}
+
+		// the primary parent of each node
+		final int[] parents = new int[nodes.length];
+
+		Arrays.fill(parents, -1);
+
+		for (int[] array : branches.values()) {
+			for (int i = 1; i < array.length; i++) {
+				parents[array[i]] = array[i - 1];
+			}
+		}
+
+		// the first copy creating a branch wins, the merges into a branch
+		// don't make it a descendant of the merged branch
+		for (BranchGraph.CopyEdge edge : graph.getEdges()) {
+			if (edge.getKind() != BranchGraph.CopyEdge.Kind.COPY) {
+				continue;
+			}
+
+			final int target = indices.get(edge.getTarget());
+
+			if ((parents[target] == -1) && (branches.get(edge.getTarget().getPath())[0] == target)) {
+				final int source = indices.get(edge.getSource());
+
+				if (nodes[source].getRevision() < nodes[target].getRevision()) {
+					parents[target] = source;
+				}
+			}
+		}
+
+		// binary lifting
+		int levels = 1;
+
+		while ((1 << levels) < nodes.length) {
+			levels++;
+		}
+
+		this.ancestors = new int[levels][];
+		this.ancestors[0] = parents;
+
+		for (int k = 1; k < levels; k++) {
+			final int[] previous = ancestors[k - 1];
+			final int[] current = new int[nodes.length];
+
+			for (int i = 0; i < nodes.length; i++) {
+				current[i] = (previous[i] == -1) ? -1 : previous[previous[i]];
+			}
+
+			ancestors[k] = current;
+		}
+
+		this.depths = new int[nodes.length];
+
+		for (int i = 0; i < nodes.length; i++) {
+			depths[i] = (parents[i] == -1) ? 0 : depths[parents[i]] + 1;
+		}
+
+		// iterative depth-first traversal (the chains can be very deep)
+		final int[] childCounts = new int[nodes.length + 1];
+
+		for (int i = 0; i < nodes.length; i++) {
+			if (parents[i] != -1) {
+				childCounts[parents[i] + 1]++;
+			}
+		}
+		for (int i = 0; i < nodes.length; i++) {
+			childCounts[i + 1] += childCounts[i];
+		}
+
+		// the children of the node i are children[offsets[i]..offsets[i+1]-1]
+		final int[] offsets = Arrays.copyOf(childCounts, childCounts.length);
+		final int[] children = new int[nodes.length];
+		final int[] positions = Arrays.copyOf(childCounts, nodes.length);
+
+		for (int i = 0; i < nodes.length; i++) {
+			if (parents[i] != -1) {
+				children[positions[parents[i]]++] = i;
+			}
+		}
+
+		this.entries = new int[nodes.length];
+		this.exits = new int[nodes.length];
+
+		final int[] stack = new int[nodes.length];
+		final int[] next = new int[nodes.length];
+
+		int time = 0;
+
+		for (int root = 0; root < nodes.length; root++) {
+			if (parents[root] != -1) {
+				continue;
+			}
+
+			int size = 0;
+
+			stack[size++] = root;
+			entries[root] = time++;
+			next[root] = offsets[root];
+
+			while (size > 0) {
+				final int node = stack[size - 1];
+
+				if (next[node] < offsets[node + 1]) {
+					final int child = children[next[node]++];
+
+					entries[child] = time++;
+					next[child] = offsets[child];
+					stack[size++] = child;
+				} else {
+					exits[node] = time++;
+					size--;
+				}
+			}
+		}
+
+		final List<String> names = new ArrayList<>(branches.keySet());
+
+		Collections.sort(names, new Comparator<String>() {
+			@Override
+			public int compare(String o1, String o2) {
+				return Integer.compare(entries[branches.get(o1)[0]], entries[branches.get(o2)[0]]);
+			}
+		});
+
+		this.branchesByEntry = names.toArray(new String[names.size()]);
+		this.branchEntries = new int[branchesByEntry.length];
+
+		for (int i = 0; i < branchesByEntry.length; i++) {
+			branchEntries[i] = entries[branches.get(branchesByEntry[i])[0]];
+		}
+	}
+
+	private int indexOf(RevisionPath node) {
+		Validate.notNull(node, "The given node is null");
+
+		final Integer index = indices.get(node);
+
+		Validate.isTrue(index != null, String.format("Unknown node %s@%d", node.getPath(), node.getRevision()));
+
+		return index;
+	}
+
+	private int[] getBranch(String branch) {
+		Validate.notNull(branch, "The given branch is null");
+
+		final int[] array = branches.get(branch);
+
+		Validate.isTrue(array != null, String.format("Unknown branch '%s'", branch));
+
+		return array;
+	}
+
+	// returns the primary parent of the given node (null for a root)
+	public RevisionPath getParent(RevisionPath node) {
+		final int parent = ancestors[0][indexOf(node)];
+
+		return (parent == -1) ? null : nodes[parent];
+	}
+
+	/**
+	 * Returns the node the given branch was cut from (null if the branch
+	 * wasn't created by a copy, e.g. a trunk).
+	 */
+	public RevisionPath getBranchPoint(String branch) {
+		final int parent = ancestors[0][getBranch(branch)[0]];
+
+		return (parent == -1) ? null : nodes[parent];
+	}
+
+	/**
+	 * Returns the successive branch points of the given branch: the node it
+	 * was cut from, then the node the branch of this node was cut from and so
+	 * on up to a root branch.
+	 */
+	public List<RevisionPath> getAncestors(String branch) {
+		final List<RevisionPath> list = new ArrayList<>();
+
+		RevisionPath point = getBranchPoint(branch);
+
+		while (point != null) {
+			list.add(point);
+
+			point = getBranchPoint(point.getPath());
+		}
+
+		return list;
+	}
+
+	/**
+	 * Returns the branches descending (directly or not) from the given branch
+	 * in the order of their creation.
+	 */
+	public List<String> getDescendants(String branch) {
+		final int first = getBranch(branch)[0];
+
+		// the branches whose first node is in the subtree of the first node
+		// of the given branch are contiguous when sorted by entry time
+		int from = Arrays.binarySearch(branchEntries, entries[first]);
+		int to = from + 1;
+
+		while ((to < branchEntries.length) && (branchEntries[to] < exits[first])) {
+			to++;
+		}
+
+		final List<String> list = new ArrayList<>(to - from - 1);
+
+		for (int i = from + 1; i < to; i++) {
+			list.add(branchesByEntry[i]);
+		}
+
+		return list;
+	}
+
+	// tells whether the first node is an ancestor of the second (or the same)
+	public boolean isAncestor(RevisionPath ancestor, RevisionPath node) {
+		final int a = indexOf(ancestor), b = indexOf(node);
+
+		return (entries[a] <= entries[b]) && (exits[b] <= exits[a]);
+	}
+
+	/**
+	 * Returns the lowest common ancestor of the given nodes (null if they
+	 * don't share any ancestor).
+	 */
+	public RevisionPath getCommonAncestor(RevisionPath node1, RevisionPath node2) {
+		int a = indexOf(node1), b = indexOf(node2);
+
+		if (depths[a] < depths[b]) {
+			final int swap = a;
+			a = b;
+			b = swap;
+		}
+
+		// lift the deepest node to the depth of the other
+		for (int k = ancestors.length - 1; k >= 0; k--) {
+			if ((ancestors[k][a] != -1) && (depths[ancestors[k][a]] >= depths[b])) {
+				a = ancestors[k][a];
+			}
+		}
+
+		if (a == b) {
+			return nodes[a];
+		}
+
+		for (int k = ancestors.length - 1; k >= 0; k--) {
+			if (ancestors[k][a] != ancestors[k][b]) {
+				a = ancestors[k][a];
+				b = ancestors[k][b];
+			}
+		}
+
+		return (ancestors[0][a] == -1) ? null : nodes[ancestors[0][a]];
+	}
+
+	/**
+	 * Returns the most recent node shared by the lineages of the given
+	 * branches (e.g. the trunk revision two branches were cut from).
+	 */
+	public RevisionPath getCommonAncestor(String branch1, String branch2) {
+		final int[] array1 = getBranch(branch1), array2 = getBranch(branch2);
+
+		return getCommonAncestor(nodes[array1[array1.length - 1]], nodes[array2[array2.length - 1]]);
+	}
+}
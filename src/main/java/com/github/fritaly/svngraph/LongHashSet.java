@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.svngraph;
+
+import java.util.Arrays;
+
+/**
+ * Set of primitive longs (open addressing with linear probing) avoiding the
+ * boxing of a {@code HashSet<Long>} when de-duplicating packed keys.
+ */
+final class LongHashSet {
+
+	// the capacity kept when cleared
+	private static final int MAX_RETAINED_CAPACITY = 1024;
+
+	// the empty slots hold 0, the presence of 0 itself is tracked apart
+	private long[] table;
+
+	private boolean containsZero;
+
+	private int size;
+
+	LongHashSet() {
+		this(16);
+	}
+
+	LongHashSet(int expectedSize) {
+		int capacity = 16;
+
+		while (capacity < expectedSize * 2) {
+			capacity <<= 1;
+		}
+
+		this.table = new long[capacity];
+	}
+
+	private static int hash(long value) {
+		// finalizer of MurmurHash3 (the packed keys differ in their high bits)
+		long h = value;
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		h ^= h >>> 33;
+
+		return (int) h;
+	}
+
+	/**
+	 * Adds the given value and returns whether it wasn't already in the set.
+	 */
+	boolean add(long value) {
+		if (value == 0) {
+			if (containsZero) {
+				return false;
+			}
+
+			containsZero = true;
+			size++;
+
+			return true;
+		}
+
+		final int mask = table.length - 1;
+
+		int slot = hash(value) & mask;
+
+		while (table[slot] != 0) {
+			if (table[slot] == value) {
+				return false;
+			}
+
+			slot = (slot + 1) & mask;
+		}
+
+		table[slot] = value;
+		size++;
+
+		if (size * 2 > table.length) {
+			rehash();
+		}
+
+		return true;
+	}
+
+	boolean contains(long value) {
+		if (value == 0) {
+			return containsZero;
+		}
+
+		final int mask = table.length - 1;
+
+		int slot = hash(value) & mask;
+
+		while (table[slot] != 0) {
+			if (table[slot] == value) {
+				return true;
+			}
+
+			slot = (slot + 1) & mask;
+		}
+
+		return false;
+	}
+
+	int size() {
+		return size;
+	}
+
+	void clear() {
+		if (size == 0) {
+			return;
+		}
+
+		if (table.length > MAX_RETAINED_CAPACITY) {
+			// a set reused many times mustn't keep the size of its largest use
+			table = new long[MAX_RETAINED_CAPACITY];
+		} else {
+			Arrays.fill(table, 0);
+		}
+
+		containsZero = false;
+		size = 0;
+	}
+
+	private void rehash() {
+		final long[] array = new long[table.length * 2];
+		final int mask = array.length - 1;
+
+		for (long value : table) {
+			if (value != 0) {
+				int slot = hash(value) & mask;
+
+				while (array[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+
+				array[slot] = value;
+			}
+		}
+
+		this.table = array;
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.svngraph;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.lang.StringEscapeUtils;
+import org.apache.commons.lang.Validate;
+
+/**
+ * Reads the commit messages of a log on demand. The revisions only hold the
+ * location (offset and length in bytes) of their message in the log file and
+ * the message is read through a positioned read of the file when requested.
+ * The file is opened on the first read and kept open until closed. The
+ * messages read last are cached. The messages can also be read from the
+ * memory-mapped buffer of a snapshot where they're stored as plain UTF-8.
+ */
+final class MessageStore implements Closeable {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final int CACHE_SIZE = 1024;
+
+	// the log file (null if the messages are read from a snapshot)
+	private final File file;
+
+	// used to detect a change of the file after it was parsed
+	private final long length, lastModified;
+
+	// the mapped snapshot (null if the messages are read from a log file)
+	private final ByteBuffer snapshot;
+
+	// the channel of the file opened on the first read (null if closed). The
+	// positioned reads don't move its position and can run concurrently
+	private FileChannel channel;
+
+	// the messages per offset, in access order
+	private final Map<Long, String> cache = new LinkedHashMap<Long, String>(64, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	};
+
+	MessageStore(File file) {
+		Validate.notNull(file, "The given file is null");
+
+		this.file = file;
+		this.length = file.length();
+		this.lastModified = file.lastModified();
+		this.snapshot = null;
+	}
+
+	MessageStore(ByteBuffer snapshot) {
+		Validate.notNull(snapshot, "The given buffer is null");
+
+		this.file = null;
+		this.length = -1;
+		this.lastModified = -1;
+		this.snapshot = snapshot;
+	}
+
+	String get(long offset, int count) {
+		synchronized (cache) {
+			final String message = cache.get(offset);
+
+			if (message != null) {
+				return message;
+			}
+		}
+
+		final String message = read(offset, count);
+
+		synchronized (cache) {
+			cache.put(offset, message);
+		}
+
+		return message;
+	}
+
+	private String read(long offset, int count) {
+		if (snapshot != null) {
+			// the buffer is duplicated since its position isn't shared safely
+			// between threads
+			final ByteBuffer buffer = snapshot.duplicate();
+			final byte[] bytes = new byte[count];
+
+			buffer.position((int) offset);
+			buffer.get(bytes);
+
+			return new String(bytes, UTF_8);
+		}
+
+		if ((file.length() != length) || (file.lastModified() != lastModified)) {
+			throw new IllegalStateException(String.format("The log '%s' changed since it was parsed", file.getAbsolutePath()));
+		}
+
+		final ByteBuffer buffer = ByteBuffer.allocate(count);
+
+		try {
+			final FileChannel channel = getChannel();
+
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, offset + buffer.position()) == -1) {
+					throw new IOException(String.format("Unexpected end of file '%s'", file.getAbsolutePath()));
+				}
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(String.format("Unable to read a message from '%s'", file.getAbsolutePath()), e);
+		}
+
+		// the text is decoded like an XML parser would do: line endings
+		// normalized and entities replaced
+		final String text = new String(buffer.array(), UTF_8).replace("\r\n", "\n").replace('\r', '\n');
+
+		return StringEscapeUtils.unescapeXml(text);
+	}
+
+	private synchronized FileChannel getChannel() throws IOException {
+		if (channel == null) {
+			channel = new FileInputStream(file).getChannel();
+		}
+
+		return channel;
+	}
+
+	// closes the file (reopened if a message is read afterwards)
+	@Override
+	public synchronized void close() throws IOException {
+		if (channel != null) {
+			channel.close();
+			channel = null;
+		}
+	}
+}
@@ -0,0 +1,262 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.svngraph;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Counters and timers collected during a run (e.g. the number of revisions
+ * parsed or the time spent exporting the graph) and dumped as JSON at the end.
+ * The hot paths update the metrics once per batch of work (e.g. once per log
+ * parsed) rather than once per item.
+ * <p>
+ * A process running several runs (e.g. the batch renderer or the render
+ * service) binds the metrics of each run to the thread executing it with
+ * {@link #bind(Metrics)} so that the runs don't mix their metrics.
+ */
+public final class Metrics {
+
+	// the metrics of the process, used when no metrics are bound to the thread
+	private static final Metrics INSTANCE = new Metrics();
+
+	private static final ThreadLocal<Metrics> CURRENT = new ThreadLocal<>();
+
+	private static final class Timer {
+
+		final AtomicLong count = new AtomicLong(), total = new AtomicLong(), max = new AtomicLong();
+
+		void record(long nanos) {
+			count.incrementAndGet();
+			total.addAndGet(nanos);
+
+			long current;
+
+			while ((current = max.get()) < nanos) {
+				if (max.compareAndSet(current, nanos)) {
+					break;
+				}
+			}
+		}
+	}
+
+	// the number of items processed and the time spent processing them
+	private static final class Rate {
+
+		final AtomicLong count = new AtomicLong(), nanos = new AtomicLong();
+
+		long getValue() {
+			final long total = nanos.get();
+
+			return (total > 0) ? (count.get() * TimeUnit.SECONDS.toNanos(1)) / total : 0;
+		}
+	}
+
+	private final ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+	private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+
+	private final ConcurrentMap<String, Rate> rates = new ConcurrentHashMap<>();
+
+	// returns the metrics bound to the current thread if any, the metrics of
+	// the process otherwise
+	public static Metrics getInstance() {
+		final Metrics metrics = CURRENT.get();
+
+		return (metrics != null) ? metrics : INSTANCE;
+	}
+
+	/**
+	 * Binds the given metrics to the current thread (null to unbind them) and
+	 * returns the metrics previously bound (null if none) to restore once the
+	 * run completes.
+	 */
+	static Metrics bind(Metrics metrics) {
+		final Metrics previous = CURRENT.get();
+
+		if (metrics != null) {
+			CURRENT.set(metrics);
+		} else {
+			CURRENT.remove();
+		}
+
+		return previous;
+	}
+
+	private AtomicLong getCounter(String name) {
+		Validate.notNull(name, "The given name is null");
+
+		AtomicLong counter = counters.get(name);
+
+		if (counter == null) {
+			final AtomicLong previous = counters.putIfAbsent(name, counter = new AtomicLong());
+
+			if (previous != null) {
+				counter = previous;
+			}
+		}
+
+		return counter;
+	}
+
+	public void increment(String name) {
+		getCounter(name).incrementAndGet();
+	}
+
+	public void add(String name, long delta) {
+		getCounter(name).addAndGet(delta);
+	}
+
+	// sets the value of a counter (e.g. a rate)
+	public void set(String name, long value) {
+		getCounter(name).set(value);
+	}
+
+	public long get(String name) {
+		final AtomicLong counter = counters.get(name);
+
+		return (counter != null) ? counter.get() : 0;
+	}
+
+	// returns a start time to pass to stop()
+	public long start() {
+		return System.nanoTime();
+	}
+
+	// records the time elapsed since the given start time and returns it (in
+	// nanoseconds)
+	public long stop(String name, long start) {
+		Validate.notNull(name, "The given name is null");
+
+		final long elapsed = System.nanoTime() - start;
+
+		Timer timer = timers.get(name);
+
+		if (timer == null) {
+			final Timer previous = timers.putIfAbsent(name, timer = new Timer());
+
+			if (previous != null) {
+				timer = previous;
+			}
+		}
+
+		timer.record(elapsed);
+
+		return elapsed;
+	}
+
+	// records the given number of items processed in the given time (in
+	// nanoseconds). The rate is reported in items per second over all the
+	// calls
+	public void rate(String name, long count, long nanos) {
+		Validate.notNull(name, "The given name is null");
+
+		Rate rate = rates.get(name);
+
+		if (rate == null) {
+			final Rate previous = rates.putIfAbsent(name, rate = new Rate());
+
+			if (previous != null) {
+				rate = previous;
+			}
+		}
+
+		rate.count.addAndGet(count);
+		rate.nanos.addAndGet(nanos);
+	}
+
+	// the rate in items per second (0 if unknown)
+	public long getRate(String name) {
+		final Rate rate = rates.get(name);
+
+		return (rate != null) ? rate.getValue() : 0;
+	}
+
+	public void reset() {
+		counters.clear();
+		timers.clear();
+		rates.clear();
+	}
+
+	public String toJson() {
+		final StringBuilder builder = new StringBuilder(1024);
+		builder.append("{\n  \"counters\": {");
+
+		String separator = "\n";
+
+		for (Map.Entry<String, AtomicLong> entry : new TreeMap<>(counters).entrySet()) {
+			builder.append(separator).append("    ").append(ExportUtils.quote(entry.getKey()))
+					.append(": ").append(entry.getValue().get());
+
+			separator = ",\n";
+		}
+
+		builder.append("\n  },\n  \"timers\": {");
+
+		separator = "\n";
+
+		for (Map.Entry<String, Timer> entry : new TreeMap<>(timers).entrySet()) {
+			final Timer timer = entry.getValue();
+
+			builder.append(separator).append("    ").append(ExportUtils.quote(entry.getKey()))
+					.append(": { \"count\": ").append(timer.count.get()).append(", \"totalMillis\": ")
+					.append(TimeUnit.NANOSECONDS.toMillis(timer.total.get())).append(", \"maxMillis\": ")
+					.append(TimeUnit.NANOSECONDS.toMillis(timer.max.get())).append(" }");
+
+			separator = ",\n";
+		}
+
+		builder.append("\n  },\n  \"rates\": {");
+
+		separator = "\n";
+
+		for (Map.Entry<String, Rate> entry : new TreeMap<>(rates).entrySet()) {
+			builder.append(separator).append("    ").append(ExportUtils.quote(entry.getKey())).append(": ")
+					.append(entry.getValue().getValue());
+
+			separator = ",\n";
+		}
+
+		return builder.append("\n  }\n}\n").toString();
+	}
+
+	public void write(File file) throws IOException {
+		Validate.notNull(file, "The given file is null");
+
+		Writer writer = null;
+
+		try {
+			writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+			writer.write(toJson());
+		} finally {
+			if (writer != null) {
+				writer.close();
+			}
+		}
+	}
+}
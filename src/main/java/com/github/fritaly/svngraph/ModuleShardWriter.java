@@ -0,0 +1,254 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.svngraph;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Renders one graph per module of a history. The history is partitioned by
+ * module and the graphs are built and written concurrently on a bounded
+ * number of threads, in a given directory along with an index file listing
+ * the shards.
+ */
+public final class ModuleShardWriter {
+
+	public static final String INDEX_FILE_NAME = "index.txt";
+
+	public static final class Shard {
+
+		private final String module;
+
+		private final File file;
+
+		private final int revisionCount, significantCount, nodeCount, edgeCount;
+
+		private Shard(String module, File file, int revisionCount, int significantCount, int nodeCount, int edgeCount) {
+			this.module = module;
+			this.file = file;
+			this.revisionCount = revisionCount;
+			this.significantCount = significantCount;
+			this.nodeCount = nodeCount;
+			this.edgeCount = edgeCount;
+		}
+
+		public String getModule() {
+			return module;
+		}
+
+		public File getFile() {
+			return file;
+		}
+
+		public int getRevisionCount() {
+			return revisionCount;
+		}
+
+		public int getSignificantCount() {
+			return significantCount;
+		}
+
+		public int getNodeCount() {
+			return nodeCount;
+		}
+
+		public int getEdgeCount() {
+			return edgeCount;
+		}
+	}
+
+	private final int parallelism;
+
+	private final GraphExporter exporter;
+
+	// the reduction applied to each graph (null if none)
+	private final GraphReducer reducer;
+
+	public ModuleShardWriter(int parallelism, GraphExporter exporter, GraphReducer reducer) {
+		Validate.isTrue(parallelism > 0, String.format("Invalid parallelism %d", parallelism));
+		Validate.notNull(exporter, "The given exporter is null");
+
+		this.parallelism = parallelism;
+		this.exporter = exporter;
+		this.reducer = reducer;
+	}
+
+	private final class ShardTask implements Callable<Shard> {
+
+		private final String module;
+
+		private final History history;
+
+		private final File file;
+
+		// the metrics of the run, bound to the thread of the pool
+		private final Metrics metrics;
+
+		ShardTask(String module, History history, File file, Metrics metrics) {
+			this.module = module;
+			this.history = history;
+			this.file = file;
+			this.metrics = metrics;
+		}
+
+		@Override
+		public Shard call() throws IOException {
+			final Metrics previous = Metrics.bind(metrics);
+
+			try {
+				BranchGraph graph = new BranchGraph();
+
+				final int count = graph.add(history);
+
+				if (reducer != null) {
+					graph = reducer.reduce(graph);
+				}
+
+				exporter.export(graph, file);
+
+				return new Shard(module, file, history.getRevisionCount(), count, graph.getNodeCount(),
+						graph.getEdgeCount());
+			} finally {
+				Metrics.bind(previous);
+			}
+		}
+	}
+
+	/**
+	 * Writes the graph of each module of the given history in the given
+	 * directory (created if necessary) and returns the shards written.
+	 */
+	public List<Shard> write(History history, File directory) throws IOException {
+		Validate.notNull(history, "The given history is null");
+		Validate.notNull(directory, "The given directory is null");
+
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException(String.format("Unable to create the directory '%s'", directory.getAbsolutePath()));
+		}
+
+		final Map<String, History> modules = history.partitionByModule();
+
+		// the file of each module, checked before writing anything
+		final Map<String, File> files = new LinkedHashMap<>();
+
+		// the modules per file name (case-insensitive for the file systems
+		// ignoring the case)
+		final Map<String, String> fileNames = new HashMap<>();
+
+		for (String module : modules.keySet()) {
+			final String name = getFileName(module);
+			final String previous = fileNames.put(name.toLowerCase(Locale.ENGLISH), module);
+
+			if (previous != null) {
+				throw new IOException(String.format("The shards of the modules '%s' and '%s' would both be written to '%s'",
+						previous, module, name));
+			}
+
+			files.put(module, new File(directory, name));
+		}
+
+		// the shards record their metrics into the metrics of the caller
+		final Metrics metrics = Metrics.getInstance();
+
+		final ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+
+		try {
+			final List<Future<Shard>> futures = new ArrayList<>(modules.size());
+
+			for (Map.Entry<String, History> entry : modules.entrySet()) {
+				futures.add(executor.submit(new ShardTask(entry.getKey(), entry.getValue(), files.get(entry.getKey()),
+						metrics)));
+			}
+
+			final List<Shard> shards = new ArrayList<>(futures.size());
+
+			for (Future<Shard> future : futures) {
+				shards.add(get(future));
+			}
+
+			writeIndex(shards, new File(directory, INDEX_FILE_NAME));
+
+			return shards;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	// the name of the file of the given module derived from its path (e.g.
+	// "project.core.graphml" for "/project/core")
+	private String getFileName(String module) {
+		final String name = module.startsWith("/") ? module.substring(1) : module;
+
+		return name.replace('/', '.') + "." + exporter.getExtension() + (exporter.isGzip() ? ".gz" : "");
+	}
+
+	// one line per shard with the module, the file and the size of its graph
+	private static void writeIndex(List<Shard> shards, File file) throws IOException {
+		Writer writer = null;
+
+		try {
+			writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+			writer.write("# module\tfile\trevisions\tsignificant revisions\tnodes\tedges\n");
+
+			for (Shard shard : shards) {
+				writer.write(String.format("%s\t%s\t%d\t%d\t%d\t%d\n", shard.getModule(), shard.getFile().getName(),
+						shard.getRevisionCount(), shard.getSignificantCount(), shard.getNodeCount(), shard.getEdgeCount()));
+			}
+		} finally {
+			if (writer != null) {
+				writer.close();
+			}
+		}
+	}
+
+	// unwraps the exception thrown when writing a shard
+	private static Shard get(Future<Shard> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+
+			throw new IllegalStateException("Interrupted while writing the shards", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+}
@@ -0,0 +1,368 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.svngraph;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.Charset;
+import java.text.ParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Parses a log on several threads. The log is split into chunks of complete
+ * 'logentry' elements which are parsed on a fork-join pool. The revisions are
+ * collected in the order of the chunks so the result is identical to a
+ * sequential parsing.
+ */
+final class ParallelLogParser {
+
+	private static final Logger LOGGER = Logger.getLogger(ParallelLogParser.class.getName());
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final byte[] START_TAG = "<logentry".getBytes(UTF_8);
+
+	private static final byte[] END_TAG = "</logentry>".getBytes(UTF_8);
+
+	// each chunk is parsed as a standalone document
+	private static final byte[] PREFIX = "<log>".getBytes(UTF_8);
+
+	private static final byte[] SUFFIX = "</log>".getBytes(UTF_8);
+
+	private static final byte[] MSG_START_TAG = "<msg>".getBytes(UTF_8);
+
+	private static final byte[] MSG_EMPTY_TAG = "<msg/>".getBytes(UTF_8);
+
+	private static final byte[] MSG_END_TAG = "</msg>".getBytes(UTF_8);
+
+	private static final int CHUNK_SIZE = 1024 * 1024;
+
+	private final int parallelism;
+
+	// whether the messages are read from the file on demand
+	private final boolean lazyMessages;
+
+	// the minimum size of a chunk in bytes (smaller for the tests)
+	private final int chunkSize;
+
+	ParallelLogParser(int parallelism) {
+		this(parallelism, false);
+	}
+
+	ParallelLogParser(int parallelism, boolean lazyMessages) {
+		this(parallelism, lazyMessages, CHUNK_SIZE);
+	}
+
+	ParallelLogParser(int parallelism, boolean lazyMessages, int chunkSize) {
+		Validate.isTrue(parallelism > 0, String.format("Invalid parallelism %d", parallelism));
+		Validate.isTrue(chunkSize > 0, String.format("Invalid chunk size %d", chunkSize));
+
+		this.parallelism = parallelism;
+		this.lazyMessages = lazyMessages;
+		this.chunkSize = chunkSize;
+	}
+
+	private static final class ChunkParser implements Callable<List<Revision>> {
+
+		private final byte[] chunk;
+
+		// the store of the messages (null if loaded eagerly) and the offset of
+		// the chunk in the file
+		private final MessageStore messages;
+
+		private final long position;
+
+		// the dictionary of the thread parsing the chunk
+		private final ThreadLocal<PathDictionary> dictionaries;
+
+		// the metrics of the parsing, bound to the thread of the pool
+		private final Metrics metrics;
+
+		ChunkParser(byte[] chunk, MessageStore messages, long position, ThreadLocal<PathDictionary> dictionaries,
+				Metrics metrics) {
+
+			this.chunk = chunk;
+			this.messages = messages;
+			this.position = position;
+			this.dictionaries = dictionaries;
+			this.metrics = metrics;
+		}
+
+		// returns the offset (in the file) and the length of the message of
+		// each entry of the chunk (-1 if an entry has no message). The text of
+		// an element can't contain any '<' so the tags are searched as is
+		private long[] locateMessages() {
+			long[] locations = new long[64];
+
+			int count = 0;
+
+			int start = indexOf(chunk, 0, chunk.length, START_TAG);
+
+			while (start != -1) {
+				final int end = indexOf(chunk, start, chunk.length, END_TAG);
+				final int msg = indexOf(chunk, start, end, MSG_START_TAG);
+
+				if (count + 2 > locations.length) {
+					locations = Arrays.copyOf(locations, locations.length * 2);
+				}
+
+				if (msg != -1) {
+					final int from = msg + MSG_START_TAG.length;
+
+					locations[count++] = position + from;
+					locations[count++] = indexOf(chunk, from, end, MSG_END_TAG) - from;
+				} else if (indexOf(chunk, start, end, MSG_EMPTY_TAG) != -1) {
+					locations[count++] = position + start;
+					locations[count++] = 0;
+				} else {
+					locations[count++] = -1;
+					locations[count++] = -1;
+				}
+
+				start = indexOf(chunk, end, chunk.length, START_TAG);
+			}
+
+			return Arrays.copyOf(locations, count);
+		}
+
+		@Override
+		public List<Revision> call() throws XMLStreamException, ParseException {
+			final InputStream stream = new SequenceInputStream(new ByteArrayInputStream(PREFIX), new SequenceInputStream(
+					new ByteArrayInputStream(chunk), new ByteArrayInputStream(SUFFIX)));
+
+			// the factories aren't guaranteed to be thread-safe
+			final XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(stream, "UTF-8");
+
+			final Metrics previous = Metrics.bind(metrics);
+
+			try {
+				final List<Revision> revisions = new ArrayList<>();
+
+				final long[] locations = (messages != null) ? locateMessages() : null;
+
+				final PathDictionary dictionary = dictionaries.get();
+
+				while (reader.hasNext()) {
+					if ((reader.next() == XMLStreamConstants.START_ELEMENT) && "logentry".equals(reader.getLocalName())) {
+						if (messages != null) {
+							final int index = revisions.size() * 2;
+
+							revisions.add(new Revision(reader, messages, locations[index], (int) locations[index + 1],
+									dictionary));
+						} else {
+							revisions.add(new Revision(reader, null, -1, -1, dictionary));
+						}
+					}
+				}
+
+				return revisions;
+			} finally {
+				Metrics.bind(previous);
+
+				reader.close();
+			}
+		}
+	}
+
+	History parse(File file) throws IOException, XMLStreamException, ParseException {
+		Validate.notNull(file, "The given file is null");
+
+		final ForkJoinPool pool = new ForkJoinPool(parallelism);
+
+		final MessageStore messages = lazyMessages ? new MessageStore(file) : null;
+
+		final Metrics metrics = Metrics.getInstance();
+
+		// one dictionary per parsing thread so that the threads never contend
+		// when interning the paths. The pool is discarded at the end of the
+		// parsing and so are the dictionaries of its threads
+		final ThreadLocal<PathDictionary> dictionaries = new ThreadLocal<PathDictionary>() {
+			@Override
+			protected PathDictionary initialValue() {
+				return new PathDictionary();
+			}
+		};
+
+		InputStream stream = null;
+
+		try {
+			stream = new FileInputStream(file);
+
+			// the offset in the file of the first byte of the buffer
+			long position = 0;
+
+			// the chunks being parsed, the number of pending chunks is bounded
+			// to limit the memory consumed
+			final Deque<Future<List<Revision>>> futures = new ArrayDeque<>();
+
+			final List<Revision> revisions = new ArrayList<>();
+
+			byte[] buffer = new byte[chunkSize * 2];
+
+			int length = 0;
+
+			// whether the header preceding the first 'logentry' was skipped
+			boolean started = false;
+
+			while (true) {
+				if (length == buffer.length) {
+					// a single entry is larger than the buffer
+					buffer = Arrays.copyOf(buffer, buffer.length * 2);
+				}
+
+				final int count = stream.read(buffer, length, buffer.length - length);
+
+				if (count != -1) {
+					length += count;
+				}
+
+				if (!started) {
+					final int start = indexOf(buffer, 0, length, START_TAG);
+
+					if (start != -1) {
+						System.arraycopy(buffer, start, buffer, 0, length - start);
+
+						length -= start;
+						position += start;
+						started = true;
+					}
+				}
+
+				if (started && ((length >= chunkSize) || (count == -1))) {
+					// cut the chunk after the last complete entry
+					final int end = lastIndexOf(buffer, length, END_TAG);
+
+					if (end != -1) {
+						final int chunkLength = end + END_TAG.length;
+
+						futures.add(pool.submit(new ChunkParser(Arrays.copyOf(buffer, chunkLength), messages, position,
+								dictionaries, metrics)));
+
+						System.arraycopy(buffer, chunkLength, buffer, 0, length - chunkLength);
+
+						length -= chunkLength;
+						position += chunkLength;
+					}
+
+					while (futures.size() > parallelism * 2) {
+						revisions.addAll(get(futures.removeFirst()));
+					}
+				}
+
+				if (count == -1) {
+					break;
+				}
+			}
+
+			if (indexOf(buffer, 0, length, START_TAG) != -1) {
+				throw new XMLStreamException(String.format("The log '%s' is truncated", file.getAbsolutePath()));
+			}
+
+			while (!futures.isEmpty()) {
+				revisions.addAll(get(futures.removeFirst()));
+			}
+
+			final History history = new History(revisions);
+
+			LOGGER.info(String.format("Parsed %d revisions", history.getRevisionCount()));
+
+			return history;
+		} finally {
+			pool.shutdownNow();
+
+			// a chunk can be parsed by the calling thread when waiting for it
+			dictionaries.remove();
+
+			if (stream != null) {
+				stream.close();
+			}
+		}
+	}
+
+	// unwraps the exception thrown when parsing a chunk
+	private static List<Revision> get(Future<List<Revision>> future) throws XMLStreamException, ParseException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+
+			throw new IllegalStateException("Interrupted while parsing the log", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof XMLStreamException) {
+				throw (XMLStreamException) e.getCause();
+			}
+			if (e.getCause() instanceof ParseException) {
+				throw (ParseException) e.getCause();
+			}
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	private static int indexOf(byte[] array, int from, int to, byte[] pattern) {
+		for (int i = from; i <= to - pattern.length; i++) {
+			if (matches(array, i, pattern)) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	private static int lastIndexOf(byte[] array, int to, byte[] pattern) {
+		for (int i = to - pattern.length; i >= 0; i--) {
+			if (matches(array, i, pattern)) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	private static boolean matches(byte[] array, int offset, byte[] pattern) {
+		for (int j = 0; j < pattern.length; j++) {
+			if (array[offset + j] != pattern[j]) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+}
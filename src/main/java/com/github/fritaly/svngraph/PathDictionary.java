@@ -0,0 +1,232 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.svngraph;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Dictionary of the paths shared by the updates created by one ingest (one
+ * parsing of a log, a dump or a snapshot). The paths are stored as a tree of
+ * segments so that a prefix like "/project/branches/foo" is stored only once
+ * whatever the number of paths under it. Each path is identified by the (int)
+ * id of the node of its last segment.
+ * <p>
+ * The paths are interned by a single thread, the dictionary can then be read
+ * concurrently once published (e.g. through the resulting {@link History}). It
+ * is released with the updates referencing it.
+ */
+final class PathDictionary {
+
+	// the id of the (virtual) root of the tree
+	private static final int ROOT = 0;
+
+	// the id of the parent node and the segment of each node. The arrays are
+	// small initially since the public constructors of Update and Revision
+	// create a dictionary per instance
+	private int[] parents = new int[16];
+
+	private String[] segments = new String[16];
+
+	// the classification of each path, computed lazily
+	private PathInfo[] infos = new PathInfo[16];
+
+	private int size = 1;
+
+	// open-addressing hash table of the node ids indexed by (parent, segment)
+	private int[] table = new int[32];
+
+	// the segments are shared between nodes (e.g. "src" or "main")
+	private final Map<String, String> names = new HashMap<>();
+
+	// the number of characters of the names above
+	private long nameLength;
+
+	/**
+	 * Returns the id of the given path, adding it to the dictionary if
+	 * necessary.
+	 */
+	int intern(String path) {
+		Validate.notNull(path, "The given path is null");
+
+		int node = ROOT;
+
+		int start = 0;
+
+		while (start <= path.length()) {
+			int end = path.indexOf('/', start);
+
+			if (end == -1) {
+				end = path.length();
+			}
+
+			node = getOrCreateChild(node, path, start, end);
+
+			start = end + 1;
+		}
+
+		return node;
+	}
+
+	private int getOrCreateChild(int parent, String path, int start, int end) {
+		// same hash as the one of the segment string
+		int hash = 0;
+
+		for (int i = start; i < end; i++) {
+			hash = (31 * hash) + path.charAt(i);
+		}
+
+		final int mask = table.length - 1;
+
+		int slot = mix(parent, hash) & mask;
+
+		while (table[slot] != 0) {
+			final int id = table[slot];
+			final String segment = segments[id];
+
+			if ((parents[id] == parent) && (segment.length() == end - start)
+					&& path.regionMatches(start, segment, 0, end - start)) {
+				return id;
+			}
+
+			slot = (slot + 1) & mask;
+		}
+
+		// new node
+		if (size == parents.length) {
+			final int capacity = parents.length * 2;
+
+			segments = Arrays.copyOf(segments, capacity);
+			infos = Arrays.copyOf(infos, capacity);
+			parents = Arrays.copyOf(parents, capacity);
+		}
+
+		final String name = path.substring(start, end);
+
+		String segment = names.get(name);
+
+		if (segment == null) {
+			names.put(name, segment = name);
+
+			nameLength += name.length();
+		}
+
+		final int id = size++;
+
+		segments[id] = segment;
+		parents[id] = parent;
+		table[slot] = id;
+
+		if (size * 2 > table.length) {
+			rehash();
+		}
+
+		return id;
+	}
+
+	private static int mix(int parent, int hash) {
+		final int h = (parent * 0x9E3779B9) ^ hash;
+
+		return h ^ (h >>> 16);
+	}
+
+	private void rehash() {
+		final int[] array = new int[table.length * 2];
+		final int mask = array.length - 1;
+
+		for (int id = 1; id < size; id++) {
+			int slot = mix(parents[id], segments[id].hashCode()) & mask;
+
+			while (array[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+
+			array[slot] = id;
+		}
+
+		this.table = array;
+	}
+
+	String getPath(int id) {
+		if ((id <= ROOT) || (id >= size)) {
+			throw new IllegalArgumentException("Invalid path id " + id);
+		}
+
+		// compute the length of the path before building it
+		int length = -1;
+
+		for (int node = id; node != ROOT; node = parents[node]) {
+			length += segments[node].length() + 1;
+		}
+
+		final char[] chars = new char[length];
+
+		int end = length;
+
+		for (int node = id; node != ROOT; node = parents[node]) {
+			final String segment = segments[node];
+
+			end -= segment.length();
+
+			segment.getChars(0, segment.length(), chars, end);
+
+			if (end > 0) {
+				chars[--end] = '/';
+			}
+		}
+
+		return new String(chars);
+	}
+
+	// returns the id of the parent of the given path (0 for the root of the
+	// tree)
+	int getParent(int id) {
+		if ((id <= ROOT) || (id >= size)) {
+			throw new IllegalArgumentException("Invalid path id " + id);
+		}
+
+		return parents[id];
+	}
+
+	PathInfo getInfo(int id) {
+		// getPath() rejects the invalid ids
+		PathInfo info = ((id > ROOT) && (id < size)) ? infos[id] : null;
+
+		if (info == null) {
+			// the computation is idempotent, concurrent calls are harmless
+			info = PathInfo.get(getPath(id));
+
+			infos[id] = info;
+		}
+
+		return info;
+	}
+
+	int size() {
+		return size - 1;
+	}
+
+	// rough estimate of the memory retained by the dictionary, in bytes
+	long getEstimatedSize() {
+		// the arrays plus the names (map entry, string and characters)
+		return (parents.length * 4L) + (segments.length * 8L) + (infos.length * 8L) + (table.length * 4L)
+				+ (names.size() * 80L) + (nameLength * 2);
+	}
+}
@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.svngraph;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Trie of path segments mapping each directory prefix to the sorted numbers of
+ * the revisions updating a path under it. Built once per {@link History}.
+ */
+final class PathIndex {
+
+	private static final long[] EMPTY = new long[0];
+
+	private static final class Node {
+
+		// created lazily since most nodes are files without children. Sorted
+		// so that the children starting with a prefix are contiguous
+		private NavigableMap<String, Node> children;
+
+		// numbers of the revisions updating this path or a path under it,
+		// sorted in ascending order
+		private long[] revisions = new long[2];
+
+		private int size;
+
+		Node getChild(String segment) {
+			return (children != null) ? children.get(segment) : null;
+		}
+
+		Node getOrCreateChild(String segment) {
+			if (children == null) {
+				children = new TreeMap<>();
+			}
+
+			Node child = children.get(segment);
+
+			if (child == null) {
+				children.put(segment, child = new Node());
+			}
+
+			return child;
+		}
+
+		void add(long revision) {
+			if ((size > 0) && (revisions[size - 1] == revision)) {
+				// the revision is already indexed
+				return;
+			}
+			if (size == revisions.length) {
+				revisions = Arrays.copyOf(revisions, size * 2);
+			}
+
+			revisions[size++] = revision;
+		}
+
+		void trim() {
+			if (size < revisions.length) {
+				revisions = Arrays.copyOf(revisions, size);
+			}
+			if (children != null) {
+				for (Node child : children.values()) {
+					child.trim();
+				}
+			}
+		}
+	}
+
+	private final Node root = new Node();
+
+	// the revisions must be given in ascending order
+	PathIndex(Collection<Revision> revisions) {
+		Validate.notNull(revisions, "The given collection of revisions is null");
+
+		for (Revision revision : revisions) {
+			for (Update update : revision.getUpdates()) {
+				add(update.getPath(), revision.getNumber());
+			}
+		}
+
+		root.trim();
+	}
+
+	private void add(String path, long revision) {
+		Node node = root;
+
+		int start = 0;
+
+		while (start <= path.length()) {
+			int end = path.indexOf('/', start);
+
+			if (end == -1) {
+				end = path.length();
+			}
+
+			node = node.getOrCreateChild(path.substring(start, end));
+			node.add(revision);
+
+			start = end + 1;
+		}
+	}
+
+	/**
+	 * Returns the sorted numbers of the revisions updating a path starting with
+	 * the given one. Follows the semantics of {@link String#startsWith(String)}
+	 * so "/branches/foo" also matches "/branches/foobar".
+	 */
+	long[] getRevisions(String path) {
+		Validate.notNull(path, "The given path is null");
+
+		// walk down to the parent directory of the last segment
+		final int index = path.lastIndexOf('/');
+
+		Node parent = root;
+
+		int start = 0;
+
+		while ((parent != null) && (start <= index)) {
+			final int end = path.indexOf('/', start);
+
+			parent = parent.getChild(path.substring(start, end));
+
+			start = end + 1;
+		}
+
+		if ((parent == null) || (parent.children == null)) {
+			return EMPTY;
+		}
+
+		// then merge the revisions of the children matching the last segment:
+		// the exact match (if any) comes first, followed by the children
+		// sharing the segment as a prefix
+		final String prefix = path.substring(index + 1);
+
+		long[] result = EMPTY;
+
+		for (Map.Entry<String, Node> entry : parent.children.tailMap(prefix, true).entrySet()) {
+			if (!entry.getKey().startsWith(prefix)) {
+				break;
+			}
+
+			result = merge(result, entry.getValue().revisions, entry.getValue().size);
+		}
+
+		return result;
+	}
+
+	// merges 2 sorted arrays of revision numbers, removing the duplicates
+	private static long[] merge(long[] array1, long[] array2, int length2) {
+		if (array1.length == 0) {
+			return Arrays.copyOf(array2, length2);
+		}
+
+		final long[] result = new long[array1.length + length2];
+
+		int i = 0, j = 0, k = 0;
+
+		while ((i < array1.length) && (j < length2)) {
+			if (array1[i] < array2[j]) {
+				result[k++] = array1[i++];
+			} else if (array1[i] > array2[j]) {
+				result[k++] = array2[j++];
+			} else {
+				result[k++] = array1[i++];
+				j++;
+			}
+		}
+		while (i < array1.length) {
+			result[k++] = array1[i++];
+		}
+		while (j < length2) {
+			result[k++] = array2[j++];
+		}
+
+		return (k < result.length) ? Arrays.copyOf(result, k) : result;
+	}
+}
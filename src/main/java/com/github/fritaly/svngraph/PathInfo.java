@@ -0,0 +1,278 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.svngraph;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.lang.Validate;
+import org.apache.commons.lang.builder.ToStringBuilder;
+import org.apache.commons.lang.builder.ToStringStyle;
+
+/**
+ * Classification of a repository path computed with a single scan of its
+ * segments. Returns the same results as the regular expressions formerly used
+ * by {@link Utils}: when several keywords appear in a path, the last matching
+ * occurrence wins.
+ */
+public final class PathInfo {
+
+	public static enum Kind {
+		TRUNK, BRANCH, TAG, OTHER;
+	}
+
+	private static final String TRUNK = "trunk";
+
+	private static final String BRANCHES = "branches";
+
+	private static final String TAGS = "tags";
+
+	private static final int MAX_CACHE_SIZE = 100000;
+
+	private static final ConcurrentMap<String, PathInfo> CACHE = new ConcurrentHashMap<>();
+
+	private final String path;
+
+	private final Kind kind;
+
+	private final String rootPath;
+
+	private final String rootName;
+
+	private final String module;
+
+	// the path of the module (e.g. "/project/core"), null if none
+	private final String modulePath;
+
+	// end offsets of the last trunk, branch and tag directories found in the
+	// path (-1 if none)
+	private final int trunkEnd, branchEnd, tagEnd;
+
+	// start offset of the last segment following a 'branches' or 'tags' segment
+	private final int branchStart, tagStart;
+
+	private final boolean trunkDirectory;
+
+	private PathInfo(String path) {
+		this.path = path;
+
+		int trunkEnd = -1, branchEnd = -1, branchStart = -1, tagEnd = -1, tagStart = -1, nameStart = -1, nameEnd = -1;
+		int moduleStart = -1, moduleEnd = -1;
+
+		boolean containsTrunk = false;
+
+		// bounds of the previous segment
+		int previousStart = -1, previousEnd = -1;
+
+		final int length = path.length();
+
+		int start = 0;
+
+		while (start <= length) {
+			int end = path.indexOf('/', start);
+
+			if (end == -1) {
+				end = length;
+			}
+
+			// a keyword only counts when preceded by a '/' (the first segment
+			// is never considered)
+			if (start > 0) {
+				final boolean trunk = isSegment(path, start, end, TRUNK);
+
+				if (trunk) {
+					trunkEnd = end;
+
+					if (end < length) {
+						containsTrunk = true;
+					}
+				}
+
+				final boolean keyword = trunk || isSegment(path, start, end, BRANCHES) || isSegment(path, start, end, TAGS);
+
+				if (keyword && (end < length) && (previousStart > 0) && (previousEnd > previousStart)) {
+					// the module is the segment preceding the keyword
+					moduleStart = previousStart;
+					moduleEnd = previousEnd;
+				}
+
+				if ((end > start) && (previousStart > 0)) {
+					// a non-empty segment following 'branches' or 'tags'
+					if (isSegment(path, previousStart, previousEnd, BRANCHES)) {
+						branchStart = nameStart = start;
+						branchEnd = nameEnd = end;
+					} else if (isSegment(path, previousStart, previousEnd, TAGS)) {
+						tagStart = nameStart = start;
+						tagEnd = nameEnd = end;
+					}
+				}
+			}
+
+			previousStart = start;
+			previousEnd = end;
+
+			start = end + 1;
+		}
+
+		this.trunkEnd = trunkEnd;
+		this.branchEnd = branchEnd;
+		this.branchStart = branchStart;
+		this.tagEnd = tagEnd;
+		this.tagStart = tagStart;
+		this.trunkDirectory = (trunkEnd == length);
+		this.module = (moduleStart != -1) ? path.substring(moduleStart, moduleEnd) : null;
+		this.modulePath = (moduleStart != -1) ? path.substring(0, moduleEnd) : null;
+
+		if (trunkEnd != -1) {
+			this.kind = Kind.TRUNK;
+			this.rootPath = path.substring(0, trunkEnd);
+		} else if (branchEnd != -1) {
+			this.kind = Kind.BRANCH;
+			this.rootPath = path.substring(0, branchEnd);
+		} else if (tagEnd != -1) {
+			this.kind = Kind.TAG;
+			this.rootPath = path.substring(0, tagEnd);
+		} else {
+			this.kind = Kind.OTHER;
+			this.rootPath = null;
+		}
+
+		// same precedence as the former regular expressions
+		if (trunkDirectory) {
+			this.rootName = TRUNK;
+		} else if (branchEnd == length) {
+			this.rootName = path.substring(branchStart, length);
+		} else if (tagEnd == length) {
+			this.rootName = path.substring(tagStart, length);
+		} else if (containsTrunk) {
+			this.rootName = TRUNK;
+		} else if (nameStart != -1) {
+			this.rootName = path.substring(nameStart, nameEnd);
+		} else {
+			this.rootName = null;
+		}
+	}
+
+	private static boolean isSegment(String path, int start, int end, String name) {
+		return ((end - start) == name.length()) && path.regionMatches(start, name, 0, name.length());
+	}
+
+	// classifies the given path without going through the cache
+	static PathInfo parse(String path) {
+		return new PathInfo(path);
+	}
+
+	/**
+	 * Returns the classification of the given path. The results are cached
+	 * so that repeated paths are only scanned once.
+	 */
+	public static PathInfo get(String path) {
+		Validate.notNull(path, "The given path is null");
+
+		PathInfo info = CACHE.get(path);
+
+		if (info == null) {
+			if (CACHE.size() >= MAX_CACHE_SIZE) {
+				// cheap eviction policy, the cache is simply reset when full
+				CACHE.clear();
+			}
+
+			info = parse(path);
+
+			final PathInfo previous = CACHE.putIfAbsent(path, info);
+
+			if (previous != null) {
+				info = previous;
+			}
+		}
+
+		return info;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	// the path of the trunk, branch or tag the path belongs to (null if none)
+	public String getRootPath() {
+		return rootPath;
+	}
+
+	// "trunk" or the name of the branch or tag the path belongs to (null if none)
+	public String getRootName() {
+		return rootName;
+	}
+
+	public String getModule() {
+		return module;
+	}
+
+	// the path of the directory of the module, unlike the module name it's
+	// unique across the repository
+	public String getModulePath() {
+		return modulePath;
+	}
+
+	// tells whether the path points directly to a trunk, branch or tag
+	// directory
+	public boolean isRootDirectory() {
+		return trunkDirectory || isBranchDirectory() || isTagDirectory();
+	}
+
+	public boolean isTrunkDirectory() {
+		return trunkDirectory;
+	}
+
+	public boolean isBranchDirectory() {
+		return (branchEnd != -1) && (branchEnd == path.length());
+	}
+
+	public boolean isTagDirectory() {
+		return (tagEnd != -1) && (tagEnd == path.length());
+	}
+
+	public String getTrunkPath() {
+		return (trunkEnd != -1) ? path.substring(0, trunkEnd) : null;
+	}
+
+	public String getBranchPath() {
+		return (branchEnd != -1) ? path.substring(0, branchEnd) : null;
+	}
+
+	public String getBranchName() {
+		return isBranchDirectory() ? path.substring(branchStart) : null;
+	}
+
+	public String getTagPath() {
+		return (tagEnd != -1) ? path.substring(0, tagEnd) : null;
+	}
+
+	public String getTagName() {
+		return isTagDirectory() ? path.substring(tagStart) : null;
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).append("path", path).append("kind", kind)
+				.append("rootPath", rootPath).append("rootName", rootName).append("module", module)
+				.append("modulePath", modulePath).toString();
+	}
+}
@@ -18,16 +18,19 @@ package com.github.fritaly.svngraph;
 
 import static com.github.fritaly.svngraph.Utils.getChild;
 import static com.github.fritaly.svngraph.Utils.hasChild;
+import static com.github.fritaly.svngraph.Utils.skipElement;
 import static com.github.fritaly.svngraph.Utils.validateElement;
 
-import java.text.DateFormat;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
 import org.apache.commons.lang.Validate;
 import org.apache.commons.lang.builder.ToStringBuilder;
 import org.apache.commons.lang.builder.ToStringStyle;
@@ -36,32 +39,145 @@ import org.w3c.dom.NodeList;
 
 public final class Revision {
 
-	private static final DateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSSSS'Z'");
-
 	private final long number;
 
 	private final String author;
 
-	private final Date date;
+	// the date of the revision as a number of microseconds since the epoch
+	private final long timestamp;
 
 	private final String message;
 
+	// the store the message is read from when requested (null if the message
+	// is held in memory) and the location of the message in this store (-1
+	// if the revision has no message)
+	private final MessageStore messages;
+
+	private final long messageOffset;
+
+	private final int messageLength;
+
 	private final List<Update> updates = new ArrayList<>();
 
+	// lazily computed, the computation being idempotent there is no need to
+	// synchronize it
+	private volatile List<Update> significantUpdates;
+
 	public Revision(Element element) throws ParseException {
+		this(element, new PathDictionary());
+	}
+
+	// the paths of the updates are interned in the given dictionary
+	Revision(Element element, PathDictionary dictionary) throws ParseException {
 		validateElement(element, "logentry");
 
 		this.number = Long.parseLong(element.getAttribute("revision"));
 		this.author = hasChild(element, "author") ? getChild(element, "author").getTextContent() : null;
-		this.date = DATE_FORMAT.parse(getChild(element, "date").getTextContent());
+		this.timestamp = Timestamps.parse(getChild(element, "date").getTextContent());
 		this.message = hasChild(element, "msg") ? getChild(element, "msg").getTextContent() : null;
+		this.messages = null;
+		this.messageOffset = -1;
+		this.messageLength = -1;
 
 		// Parse the affected paths
 		final NodeList nodes = getChild(element, "paths").getElementsByTagName("path");
 
 		for (int i = 0; i < nodes.getLength(); i++) {
-			this.updates.add(new Update((Element) nodes.item(i)));
+			this.updates.add(new Update((Element) nodes.item(i), dictionary));
+		}
+	}
+
+	Revision(long number, String author, long timestamp, String message, List<Update> updates) {
+		Validate.notNull(updates, "The given list of updates is null");
+
+		this.number = number;
+		this.author = author;
+		this.timestamp = timestamp;
+		this.message = message;
+		this.messages = null;
+		this.messageOffset = -1;
+		this.messageLength = -1;
+		this.updates.addAll(updates);
+	}
+
+	// the message is read from the given store at the given location when
+	// requested
+	Revision(long number, String author, long timestamp, MessageStore messages, long messageOffset, int messageLength,
+			List<Update> updates) {
+		Validate.notNull(messages, "The given message store is null");
+		Validate.notNull(updates, "The given list of updates is null");
+
+		this.number = number;
+		this.author = author;
+		this.timestamp = timestamp;
+		this.message = null;
+		this.messages = messages;
+		this.messageOffset = messageOffset;
+		this.messageLength = messageLength;
+		this.updates.addAll(updates);
+	}
+
+	// copy of the given revision with the given updates (the message isn't
+	// loaded if read on demand)
+	Revision(Revision revision, List<Update> updates) {
+		Validate.notNull(revision, "The given revision is null");
+		Validate.notNull(updates, "The given list of updates is null");
+
+		this.number = revision.number;
+		this.author = revision.author;
+		this.timestamp = revision.timestamp;
+		this.message = revision.message;
+		this.messages = revision.messages;
+		this.messageOffset = revision.messageOffset;
+		this.messageLength = revision.messageLength;
+		this.updates.addAll(updates);
+	}
+
+	public Revision(XMLStreamReader reader) throws XMLStreamException, ParseException {
+		this(reader, null, -1, -1, new PathDictionary());
+	}
+
+	// when a message store is given, the 'msg' element is skipped and the
+	// message is read from the store at the given location when requested
+	Revision(XMLStreamReader reader, MessageStore messages, long messageOffset, int messageLength,
+			PathDictionary dictionary) throws XMLStreamException, ParseException {
+
+		validateElement(reader, "logentry");
+
+		this.number = Long.parseLong(reader.getAttributeValue(null, "revision"));
+
+		String author = null, date = null, message = null;
+
+		// consume the children until reaching the end of the 'logentry' element
+		while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+			final String name = reader.getLocalName();
+
+			if ("author".equals(name)) {
+				author = reader.getElementText();
+			} else if ("date".equals(name)) {
+				date = reader.getElementText();
+			} else if ("msg".equals(name) && (messages == null)) {
+				message = reader.getElementText();
+			} else if ("paths".equals(name)) {
+				// parse the affected paths
+				while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+					this.updates.add(new Update(reader, dictionary));
+				}
+			} else {
+				skipElement(reader);
+			}
 		}
+
+		if (date == null) {
+			throw new IllegalArgumentException(String.format("The revision %d doesn't define any date", number));
+		}
+
+		this.author = author;
+		this.timestamp = Timestamps.parse(date);
+		this.message = message;
+		this.messages = messages;
+		this.messageOffset = messageOffset;
+		this.messageLength = messageLength;
 	}
 
 	public List<Update> getUpdates() {
@@ -69,15 +185,22 @@ public final class Revision {
 	}
 
 	public List<Update> getSignificantUpdates() {
-		final List<Update> list = new ArrayList<>();
+		List<Update> result = significantUpdates;
 
-		for (Update update : updates) {
-			if (update.isSignificant()) {
-				list.add(update);
+		if (result == null) {
+			final List<Update> list = new ArrayList<>();
+
+			for (Update update : updates) {
+				if (update.isSignificant()) {
+					list.add(update);
+				}
 			}
+
+			significantUpdates = result = list.isEmpty() ? Collections.<Update> emptyList() : Collections
+					.unmodifiableList(list);
 		}
 
-		return list;
+		return result;
 	}
 
 	public long getNumber() {
@@ -88,11 +211,20 @@ public final class Revision {
 		return author;
 	}
 
+	// the number of microseconds since the epoch
+	public long getTimestamp() {
+		return timestamp;
+	}
+
 	public Date getDate() {
-		return new Date(date.getTime());
+		return new Date(timestamp / 1000);
 	}
 
 	public String getMessage() {
+		if ((messages != null) && (messageOffset != -1)) {
+			return messages.get(messageOffset, messageLength);
+		}
+
 		return message;
 	}
 
@@ -109,15 +241,29 @@ public final class Revision {
 		return false;
 	}
 
+	// rough estimate of the memory retained by the revision and its updates
+	// (their paths aside, stored in a dictionary), in bytes
+	long getEstimatedSize() {
+		long size = 128 + (updates.size() * 40L);
+
+		if (author != null) {
+			size += 40 + (author.length() * 2L);
+		}
+		if (message != null) {
+			size += 40 + (message.length() * 2L);
+		}
+
+		return size;
+	}
+
 	public boolean isSignificant() {
 		// a revision is significant if one of its attached updates is significant
-		for (Update update : updates) {
-			if (update.isSignificant()) {
-				return true;
-			}
-		}
+		return !getSignificantUpdates().isEmpty();
+	}
 
-		return false;
+	// the store the message is read from on demand (null if loaded eagerly)
+	MessageStore getMessageStore() {
+		return messages;
 	}
 
 	@Override
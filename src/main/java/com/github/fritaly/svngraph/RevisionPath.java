@@ -17,7 +17,6 @@
 package com.github.fritaly.svngraph;
 
 import org.apache.commons.lang.StringUtils;
-import org.apache.commons.lang.builder.HashCodeBuilder;
 import org.apache.commons.lang.builder.ToStringBuilder;
 import org.apache.commons.lang.builder.ToStringStyle;
 
@@ -27,9 +26,13 @@ public final class RevisionPath implements Comparable<RevisionPath> {
 
 	private final long revision;
 
+	// the instances are used as keys of hash maps when building the graph
+	private final int hash;
+
 	RevisionPath(String path, long revision) {
 		this.path = path;
 		this.revision = revision;
+		this.hash = (31 * ((path != null) ? path.hashCode() : 0)) + (int) (revision ^ (revision >>> 32));
 	}
 
 	public String getPath() {
@@ -64,7 +67,7 @@ public final class RevisionPath implements Comparable<RevisionPath> {
 		if (obj instanceof RevisionPath) {
 			final RevisionPath other = (RevisionPath) obj;
 
-			return (this.revision == other.revision) && StringUtils.equals(this.path, other.path);
+			return (this.revision == other.revision) && (this.hash == other.hash) && StringUtils.equals(this.path, other.path);
 		}
 
 		return false;
@@ -78,6 +81,6 @@ public final class RevisionPath implements Comparable<RevisionPath> {
 
 	@Override
 	public int hashCode() {
-		return new HashCodeBuilder(11, 31).append(path).append(revision).toHashCode();
+		return hash;
 	}
 }
\ No newline at end of file
@@ -16,71 +16,88 @@
  */
 package com.github.fritaly.svngraph;
 
-import java.awt.Color;
 import java.io.File;
 import java.io.FileWriter;
+import java.io.IOException;
+import java.text.ParseException;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
-import java.util.TreeSet;
+import java.util.logging.ConsoleHandler;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
 
-import javax.xml.parsers.DocumentBuilderFactory;
-
-import org.apache.commons.lang.math.RandomUtils;
-import org.w3c.dom.Document;
+import org.apache.commons.lang.Validate;
 
 import com.github.fritaly.graphml4j.EdgeStyle;
 import com.github.fritaly.graphml4j.GroupStyles;
 import com.github.fritaly.graphml4j.NodeStyle;
 import com.github.fritaly.graphml4j.Renderer;
 import com.github.fritaly.graphml4j.datastructure.Edge;
-import com.github.fritaly.graphml4j.datastructure.Graph;
 import com.github.fritaly.graphml4j.datastructure.Node;
 
 
 public class SvnGraph {
 
+	private static final Logger LOGGER = Logger.getLogger(SvnGraph.class.getName());
+
+	// renders the nodes with the deterministic styles of BranchStyles
 	private static final class CustomRenderer implements Renderer {
 
-		private final Map<String, NodeStyle> nodeStyles = new LinkedHashMap<>();
+		private final BranchGraph graph;
+
+		private final BranchStyles styles = new BranchStyles();
+
+		// the labels of the nodes, computed once
+		private final Map<RevisionPath, String> labels = new HashMap<>();
+
+		CustomRenderer(BranchGraph graph) {
+			this.graph = graph;
+
+			for (String branch : graph.getBranches()) {
+				final long[] revisions = graph.getRevisions(branch);
+				final long[] ends = graph.getRangeEnds(branch);
+
+				for (int i = 0; i < revisions.length; i++) {
+					final RevisionPath data = new RevisionPath(branch, revisions[i]);
+
+					labels.put(data, GraphMLExporter.getLabel(data, ends[i]));
+				}
+			}
+		}
 
 		@Override
 		public boolean isGroupOpen(Node node) {
 			return true;
 		}
 
-		private Color randomColor() {
-			return new Color(RandomUtils.nextInt(255), RandomUtils.nextInt(255), RandomUtils.nextInt(255));
-		}
-
 		@Override
 		public NodeStyle getNodeStyle(Node node) {
 			if (node.getData() instanceof RevisionPath) {
-				final RevisionPath data = (RevisionPath) node.getData();
+				final String branch = ((RevisionPath) node.getData()).getPath();
 
-				if (!nodeStyles.containsKey(data.getPath())) {
-					final NodeStyle style = new NodeStyle();
-					style.setFillColor(randomColor());
-
-					nodeStyles.put(data.getPath(), style);
-				}
-
-				return nodeStyles.get(data.getPath());
+				return styles.getNodeStyle(graph.getKind(branch), branch);
 			}
 
 			// typically for a group representing a branch
-			return new NodeStyle();
+			return BranchStyles.GROUP_NODE_STYLE;
 		}
 
 		@Override
 		public String getNodeLabel(Node node) {
 			if (node.getData() instanceof RevisionPath) {
-				final RevisionPath data = (RevisionPath) node.getData();
+				final String label = labels.get(node.getData());
 
-				return String.format("%s@%d", data.getPath(), data.getRevision());
+				if (label != null) {
+					return label;
+				}
 			}
 
 			// typically for a group representing a branch
@@ -89,156 +106,353 @@ public class SvnGraph {
 
 		@Override
 		public GroupStyles getGroupStyles(Node node) {
-			return new GroupStyles();
+			return BranchStyles.GROUP_STYLES;
 		}
 
 		@Override
 		public EdgeStyle getEdgeStyle(Edge edge) {
-			return new EdgeStyle();
+			return BranchStyles.EDGE_STYLE;
 		}
 	}
 
-	public static void main(String[] args) throws Exception {
-		if (args.length != 2) {
-			System.out.println(String.format("%s <input-file> <output-file>", SvnGraph.class.getSimpleName()));
-			System.exit(1);
+	// splits the given arguments into options (--name=value or --name) and
+	// positional arguments
+	static List<String> parseArguments(String[] args, Map<String, String> options) {
+		final List<String> arguments = new ArrayList<>();
+
+		for (String arg : args) {
+			if (arg.startsWith("--")) {
+				final int index = arg.indexOf('=');
+
+				if (index == -1) {
+					options.put(arg.substring(2), "true");
+				} else {
+					options.put(arg.substring(2, index), arg.substring(index + 1));
+				}
+			} else {
+				arguments.add(arg);
+			}
 		}
 
-		final File input = new File(args[0]);
+		return arguments;
+	}
 
-		if (!input.exists()) {
-			throw new IllegalArgumentException(String.format("The given file '%s' doesn't exist", input.getAbsolutePath()));
+	// parses a date given as "yyyy-MM-dd" (the start or the end of the day
+	// in UTC) or as a timestamp "yyyy-MM-ddTHH:mm:ss(.SSSSSS)Z"
+	private static Date parseDate(String text, boolean end) throws ParseException {
+		final String timestamp = (text.length() == 10) ? text + (end ? "T23:59:59.999999Z" : "T00:00:00Z") : text;
+
+		return new Date(Timestamps.parse(timestamp) / 1000);
+	}
+
+	// the logging is quiet by default: only the warnings are logged unless
+	// --verbose (information) or --debug (details of each revision) is given
+	static void configureLogging(Map<String, String> options) {
+		final Level level = options.containsKey("debug") ? Level.FINE : options.containsKey("verbose") ? Level.INFO
+				: Level.WARNING;
+
+		final Handler handler = new ConsoleHandler();
+		handler.setLevel(level);
+		handler.setFormatter(new Formatter() {
+			@Override
+			public String format(LogRecord record) {
+				return String.format("%-7s %s%n", record.getLevel(), formatMessage(record));
+			}
+		});
+
+		final Logger logger = Logger.getLogger(SvnGraph.class.getPackage().getName());
+		logger.setLevel(level);
+		logger.setUseParentHandlers(false);
+
+		for (Handler previous : logger.getHandlers()) {
+			logger.removeHandler(previous);
 		}
 
-		final File output = new File(args[1]);
+		logger.addHandler(handler);
+	}
 
-		final Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(input);
+	// parses the given log or 'svnadmin dump' file
+	static History parse(File input, int threads, boolean lazyMessages) throws Exception {
+		if (DumpReader.isDump(input)) {
+			return History.parseDump(input);
+		}
 
-		final History history = new History(document);
+		return History.parse(input, threads, lazyMessages);
+	}
 
-		final Set<String> rootPaths = history.getRootPaths();
+	// returns the revisions of the given history in the revision and date
+	// ranges given by the options (the history itself if none)
+	static History selectRange(History history, Map<String, String> options) throws ParseException {
+		if (options.containsKey("from-revision") || options.containsKey("to-revision")) {
+			final long from = options.containsKey("from-revision") ? Long.parseLong(options.get("from-revision")) : 0;
+			final long to = options.containsKey("to-revision") ? Long.parseLong(options.get("to-revision")) : Long.MAX_VALUE;
 
-		System.out.println(rootPaths);
+			history = history.getRevisionRange(from, to);
+		}
+		if (options.containsKey("from-date") || options.containsKey("to-date")) {
+			final Date from = options.containsKey("from-date") ? parseDate(options.get("from-date"), false) : new Date(0);
+			final Date to = options.containsKey("to-date") ? parseDate(options.get("to-date"), true) : new Date(Long.MAX_VALUE);
 
-		for (String path : rootPaths) {
-			System.out.println(path);
-			System.out.println(history.getHistory(path).getRevisions());
-			System.out.println();
+			history = history.getDateRange(from, to);
 		}
 
-		int count = 0;
+		return history;
+	}
 
-		final Graph graph = new Graph();
+	// writes the activity of each trunk, branch and tag of the given history
+	// as CSV
+	private static void writeActivity(History history, File file) throws IOException {
+		final ActivityStore store = history.getActivityStore();
 
-		FileWriter fileWriter = null;
+		final long start = Metrics.getInstance().start();
 
-		try {
-			fileWriter = new FileWriter(output);
+		final List<ActivityStore.Activity> activities = store.getActivities();
 
-			for (Revision revision : history.getSignificantRevisions()) {
-				System.out.println(revision.getNumber() + " - " + revision.getMessage());
+		Metrics.getInstance().stop("activity.aggregate", start);
 
-				// TODO Render also the deletion of branches
-				// there should be only 1 significant update per revision (the one with action ADD)
-				for (Update update : revision.getSignificantUpdates()) {
-					if (update.isCopy()) {
-						// a merge is also considered a copy
-						final RevisionPath source = update.getCopySource();
+		ActivityStore.writeCsv(activities, file);
 
-						System.out.println(String.format("  > %s %s from %s@%d", update.getAction(), update.getPath(), source.getPath(), source.getRevision()));
+		LOGGER.info(String.format("Wrote the activity of %d roots (%d updates) in '%s'", activities.size(),
+				store.getUpdateCount(), file.getAbsolutePath()));
+	}
 
-						final String sourceRoot = Utils.getRootName(source.getPath());
+	// returns the exporter of the format given by the option --format
+	// (GraphML by default)
+	static GraphExporter createExporter(Map<String, String> options, boolean gzip) {
+		final String format = options.containsKey("format") ? options.get("format") : "graphml";
 
-						if (sourceRoot == null) {
-							// skip the revisions whose associated root is
-							// null (happens whether a branch was created
-							// outside the 'branches' directory for
-							// instance)
-							System.err.println(String.format("Skipped an update for revision %d because of a null source root", source.getRevision()));
-							continue;
-						}
+		if (format.equals("graphml")) {
+			return new GraphMLExporter(gzip);
+		}
+		if (format.equals("dot")) {
+			return new DotExporter(gzip);
+		}
+		if (format.equals("ndjson")) {
+			return new JsonExporter(gzip);
+		}
+		if (format.equals("binary")) {
+			return new BinaryExporter(gzip);
+		}
 
-						final RevisionPath sourceRP = new RevisionPath(sourceRoot, source.getRevision());
+		throw new IllegalArgumentException(String.format("Unsupported format '%s'", format));
+	}
 
-						// create a node for the source (path, revision)
-						Node sourceNode = graph.getNodeByData(sourceRP);
+	// returns the reduction requested by the given options (null if none)
+	static GraphReducer createReducer(Map<String, String> options) {
+		if (!options.containsKey("collapse") && !options.containsKey("prune-age") && !options.containsKey("prune-activity")) {
+			return null;
+		}
 
-						if (sourceNode == null) {
-							sourceNode = graph.addNode(sourceRP);
-						}
+		final GraphReducer reducer = new GraphReducer();
+		reducer.setCollapseChains(options.containsKey("collapse"));
 
-						// and another for the newly created directory
-						final String targetRoot = Utils.getRootName(update.getPath());
+		if (options.containsKey("prune-age")) {
+			reducer.setMaxAge(Long.parseLong(options.get("prune-age")));
+		}
+		if (options.containsKey("prune-activity")) {
+			reducer.setMinActivity(Integer.parseInt(options.get("prune-activity")));
+		}
 
-						if (targetRoot == null) {
-							System.err.println(String.format("Skipped an update for revision %d because of a null target root", revision.getNumber()));
-							continue;
-						}
+		return reducer;
+	}
 
-						final RevisionPath targetRP = new RevisionPath(targetRoot, revision.getNumber());
+	public static void main(String[] args) throws Exception {
+		final Map<String, String> options = new TreeMap<>();
+		final List<String> arguments = parseArguments(args, options);
 
-						Node targetNode = graph.getNodeByData(targetRP);
+		if (arguments.size() != 2) {
+			System.out.println(String.format("%s [--snapshot=<snapshot-file>] [--incremental] [--threads=<n>] [--gzip] [--in-memory] [--format=graphml|dot|ndjson|binary] [--collapse] [--prune-age=<revisions>] [--prune-activity=<nodes>] [--from-revision=<n>] [--to-revision=<n>] [--from-date=<yyyy-MM-dd>] [--to-date=<yyyy-MM-dd>] [--shard-by-module] [--activity=<csv-file>] [--lazy-messages] [--verbose] [--debug] [--metrics=<json-file>] <input-file> <output-file-or-directory>",
+					SvnGraph.class.getSimpleName()));
+			System.exit(1);
+		}
 
-						if (targetNode == null) {
-							targetNode = graph.addNode(targetRP);
-						}
+		configureLogging(options);
 
-						// create an edge between the 2 nodes
-						graph.addEdge(null, sourceNode, targetNode);
-					} else {
-						System.out.println(String.format("  > %s %s", update.getAction(), update.getPath()));
-					}
-				}
+		render(new File(arguments.get(0)), new File(arguments.get(1)), options);
+
+		if (options.containsKey("metrics")) {
+			Metrics.getInstance().write(new File(options.get("metrics")));
+		}
+
+		LOGGER.info("Done");
+	}
+
+	/**
+	 * Renders the given log into the given output (a file or a directory with
+	 * the option --shard-by-module) with the given options (as passed on the
+	 * command line without the leading "--") and returns the number of
+	 * significant revisions found.
+	 */
+	public static int render(File input, File output, Map<String, String> options) throws Exception {
+		Validate.notNull(input, "The given input file is null");
+		Validate.notNull(output, "The given output file is null");
+		Validate.notNull(options, "The given map of options is null");
+
+		if (!input.exists()) {
+			throw new IllegalArgumentException(String.format("The given file '%s' doesn't exist", input.getAbsolutePath()));
+		}
+
+		// created first to reject an unknown format before parsing the log
+		final GraphExporter exporter = createExporter(options, options.containsKey("gzip")
+				|| output.getName().endsWith(".gz"));
+
+		if (options.containsKey("in-memory") && !(exporter instanceof GraphMLExporter)) {
+			throw new IllegalArgumentException("The option --in-memory only supports the GraphML format");
+		}
 
-				System.out.println();
+		// the number of threads used for parsing the log
+		final int threads = options.containsKey("threads") ? Integer.parseInt(options.get("threads")) : 1;
 
-				count++;
+		// the history rendered and the revisions parsed by this run (only the
+		// new ones in incremental mode)
+		History history, parsed;
+
+		BranchGraph branchGraph;
+
+		final int count;
+
+		final boolean windowed = options.containsKey("from-revision") || options.containsKey("to-revision")
+				|| options.containsKey("from-date") || options.containsKey("to-date");
+
+		if (options.containsKey("lazy-messages") && options.containsKey("snapshot")) {
+			LOGGER.warning("The option --lazy-messages is ignored with --snapshot, the messages are read from the snapshot");
+		}
+
+		if (options.containsKey("incremental")) {
+			if (windowed) {
+				throw new IllegalArgumentException("The revision and date ranges aren't supported in incremental mode");
+			}
+			if (options.containsKey("shard-by-module")) {
+				throw new IllegalArgumentException("The option --shard-by-module isn't supported in incremental mode");
+			}
+
+			// the input is a partial log (e.g. 'svn log --xml -v -r N:HEAD')
+			// merged into the model persisted by the previous runs
+			if (!options.containsKey("snapshot")) {
+				throw new IllegalArgumentException("The option --incremental requires the option --snapshot");
 			}
 
-			// Dispatch the revisions per corresponding branch
-			final Map<String, Set<Long>> revisionsPerBranch = new TreeMap<>();
+			final File snapshot = new File(options.get("snapshot"));
+			final File graphFile = new File(snapshot.getPath() + ".graph");
 
-			for (Node node : graph.getNodes()) {
-				final RevisionPath revisionPath = (RevisionPath) node.getData();
+			parsed = parse(input, threads, false);
 
-				final String branchName = revisionPath.getPath();
+			if (snapshot.exists()) {
+				final History base = HistorySnapshot.read(snapshot, null);
 
-				if (!revisionsPerBranch.containsKey(branchName)) {
-					revisionsPerBranch.put(branchName, new TreeSet<Long>());
+				history = base.merge(parsed);
+				branchGraph = graphFile.exists() ? BranchGraph.read(graphFile) : new BranchGraph();
+
+				final Revision last = base.getLastRevision();
+
+				if ((last == null) || (branchGraph.getLastRevision() >= last.getNumber())) {
+					// only process the new revisions
+					count = branchGraph.add(parsed);
+				} else {
+					// the persisted graph is missing or out of date
+					count = branchGraph.add(history);
 				}
+			} else {
+				history = parsed;
+				branchGraph = new BranchGraph();
+				count = branchGraph.add(history);
+			}
 
-				revisionsPerBranch.get(branchName).add(revisionPath.getRevision());
+			HistorySnapshot.write(history, snapshot, null);
+
+			branchGraph.write(graphFile);
+
+			if (options.containsKey("activity")) {
+				writeActivity(history, new File(options.get("activity")));
 			}
+		} else {
+			if (options.containsKey("snapshot")) {
+				// reuse the binary snapshot of the log if still valid
+				history = HistorySnapshot.load(input, new File(options.get("snapshot")), threads);
+			} else {
+				history = parse(input, threads, options.containsKey("lazy-messages"));
+			}
+
+			// the messages read on demand are only needed until the graph is
+			// built (e.g. to log the revisions)
+			final History source = history;
 
-			// Recreate the missing edges between revisions from a same branch and group nodes per branch
-			for (String branchName : revisionsPerBranch.keySet()) {
-				final List<Long> branchRevisions = new ArrayList<>(revisionsPerBranch.get(branchName));
+			try {
+				history = selectRange(history, options);
 
-				final Node branchNode = graph.addNode(branchName);
+				if (windowed) {
+					LOGGER.info(String.format("Selected %d revisions", history.getRevisionCount()));
+				}
+
+				if (options.containsKey("activity")) {
+					writeActivity(history, new File(options.get("activity")));
+				}
 
-				for (int i = 0; i < branchRevisions.size() - 1; i++) {
-					final RevisionPath sourceData = new RevisionPath(branchName, branchRevisions.get(i));
-					final RevisionPath targetData = new RevisionPath(branchName, branchRevisions.get(i+1));
+				if (options.containsKey("shard-by-module")) {
+					// one graph per module written in the output directory
+					final ModuleShardWriter writer = new ModuleShardWriter(threads, exporter, createReducer(options));
 
-					final Node sourceNode = graph.getNodeByData(sourceData);
-					final Node targetNode = graph.getNodeByData(targetData);
+					final List<ModuleShardWriter.Shard> shards = writer.write(history, output);
 
-					sourceNode.setParent(branchNode);
-					targetNode.setParent(branchNode);
+					LOGGER.info(String.format("Wrote %d module graphs in '%s'", shards.size(), output.getAbsolutePath()));
 
-					graph.addEdge(null, sourceNode, targetNode);
+					int total = 0;
+
+					for (ModuleShardWriter.Shard shard : shards) {
+						total += shard.getSignificantCount();
+					}
+
+					return total;
 				}
+
+				parsed = history;
+				branchGraph = new BranchGraph();
+				count = branchGraph.add(history);
+			} finally {
+				source.closeMessages();
 			}
+		}
+
+		if (LOGGER.isLoggable(Level.FINE)) {
+			final Set<String> rootPaths = parsed.getRootPaths();
 
-			graph.toGraphML(fileWriter, new CustomRenderer());
+			LOGGER.fine(rootPaths.toString());
 
-			System.out.println(String.format("Found %d significant revisions", count));
-		} finally {
-			if (fileWriter != null) {
-				fileWriter.close();
+			for (String path : rootPaths) {
+				LOGGER.fine(path + " " + parsed.getHistory(path).getRevisions());
 			}
 		}
 
-		System.out.println("Done");
+		final GraphReducer reducer = createReducer(options);
+
+		if (reducer != null) {
+			final int nodeCount = branchGraph.getNodeCount(), edgeCount = branchGraph.getEdgeCount();
+
+			branchGraph = reducer.reduce(branchGraph);
+
+			LOGGER.info(String.format("Reduced the graph from %d nodes / %d edges to %d nodes / %d edges", nodeCount,
+					edgeCount, branchGraph.getNodeCount(), branchGraph.getEdgeCount()));
+		}
+
+		if (options.containsKey("in-memory")) {
+			// builds the whole graphml4j graph before rendering it
+			FileWriter fileWriter = null;
+
+			try {
+				fileWriter = new FileWriter(output);
+
+				branchGraph.toGraph().toGraphML(fileWriter, new CustomRenderer(branchGraph));
+			} finally {
+				if (fileWriter != null) {
+					fileWriter.close();
+				}
+			}
+		} else {
+			exporter.export(branchGraph, output);
+		}
+
+		LOGGER.info(String.format("Found %d significant revisions", count));
+
+		return count;
 	}
 }
@@ -0,0 +1,440 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.svngraph;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.Validate;
+
+/**
+ * Renders the logs listed in a manifest file inside a single JVM. The logs are
+ * rendered concurrently on a pool of workers. A log is only started when the
+ * heap it's estimated to need (based on the size of the log) fits into the
+ * heap budget left by the logs being rendered.
+ */
+public final class SvnGraphBatch {
+
+	private static final Logger LOGGER = Logger.getLogger(SvnGraphBatch.class.getName());
+
+	private static final int MB = 1024 * 1024;
+
+	// the estimated number of bytes of heap needed per byte of log (the model
+	// of a revision is smaller than its XML but the graph and the GC need
+	// some headroom)
+	private static final int HEAP_PER_LOG_BYTE = 2;
+
+	// the options writing a file per rendering, all the logs of the batch
+	// would write the same file
+	private static final String[] PER_LOG_OPTIONS = { "snapshot", "incremental", "activity", "metrics" };
+
+	public static final class Entry {
+
+		private final File input, output;
+
+		public Entry(File input, File output) {
+			Validate.notNull(input, "The given input file is null");
+			Validate.notNull(output, "The given output file is null");
+
+			this.input = input;
+			this.output = output;
+		}
+
+		public File getInput() {
+			return input;
+		}
+
+		public File getOutput() {
+			return output;
+		}
+	}
+
+	public static final class Result {
+
+		private final Entry entry;
+
+		private final long duration;
+
+		private final int count;
+
+		// the error which aborted the rendering (null if successful)
+		private final Exception error;
+
+		// the metrics of the rendering
+		private final Metrics metrics;
+
+		private Result(Entry entry, long duration, int count, Exception error, Metrics metrics) {
+			this.entry = entry;
+			this.duration = duration;
+			this.count = count;
+			this.error = error;
+			this.metrics = metrics;
+		}
+
+		public Entry getEntry() {
+			return entry;
+		}
+
+		// the duration of the rendering in milliseconds
+		public long getDuration() {
+			return duration;
+		}
+
+		public int getSignificantCount() {
+			return count;
+		}
+
+		public Exception getError() {
+			return error;
+		}
+
+		public Metrics getMetrics() {
+			return metrics;
+		}
+
+		public boolean isSuccessful() {
+			return (error == null);
+		}
+	}
+
+	private final int workers;
+
+	// the heap budget in MB
+	private final int heapBudget;
+
+	private final Map<String, String> options;
+
+	public SvnGraphBatch(int workers, int heapBudget, Map<String, String> options) {
+		Validate.isTrue(workers > 0, String.format("Invalid number of workers %d", workers));
+		Validate.isTrue(heapBudget > 0, String.format("Invalid heap budget %d", heapBudget));
+		Validate.notNull(options, "The given map of options is null");
+
+		for (String option : PER_LOG_OPTIONS) {
+			if (options.containsKey(option)) {
+				throw new IllegalArgumentException(String.format("The option --%s isn't supported in batch mode",
+						option));
+			}
+		}
+
+		this.workers = workers;
+		this.heapBudget = heapBudget;
+		this.options = new TreeMap<>(options);
+	}
+
+	// the number of MB of heap reserved to render the given entry
+	int getPermits(Entry entry) {
+		final long estimate = (entry.getInput().length() * HEAP_PER_LOG_BYTE + MB - 1) / MB;
+
+		// a log exceeding the budget is rendered alone
+		return (int) Math.max(1, Math.min(estimate, heapBudget));
+	}
+
+	private final class Task implements Callable<Result> {
+
+		private final Entry entry;
+
+		private final Semaphore semaphore;
+
+		private final int permits;
+
+		Task(Entry entry, Semaphore semaphore, int permits) {
+			this.entry = entry;
+			this.semaphore = semaphore;
+			this.permits = permits;
+		}
+
+		@Override
+		public Result call() {
+			// the metrics of each log are collected separately and released
+			// with the result
+			final Metrics metrics = new Metrics();
+			final Metrics previous = Metrics.bind(metrics);
+
+			final long start = System.currentTimeMillis();
+
+			try {
+				final int count = SvnGraph.render(entry.getInput(), entry.getOutput(), options);
+
+				return new Result(entry, System.currentTimeMillis() - start, count, null, metrics);
+			} catch (Exception e) {
+				return new Result(entry, System.currentTimeMillis() - start, 0, e, metrics);
+			} catch (OutOfMemoryError e) {
+				// the other renderings are likely to be affected too, the batch
+				// is aborted
+				LOGGER.log(Level.SEVERE, String.format("Ran out of memory when rendering '%s'", entry.getInput()), e);
+
+				throw e;
+			} finally {
+				Metrics.bind(previous);
+
+				semaphore.release(permits);
+			}
+		}
+	}
+
+	/**
+	 * Renders the given entries and returns the result of each (in the same
+	 * order). A failure doesn't prevent the other entries from being rendered
+	 * but an error (e.g. an {@link OutOfMemoryError}) aborts the batch as soon
+	 * as it occurs: the pending renderings are cancelled.
+	 */
+	public List<Result> run(List<Entry> entries) throws InterruptedException {
+		Validate.notNull(entries, "The given list of entries is null");
+
+		final Semaphore semaphore = new Semaphore(heapBudget);
+
+		final ExecutorService executor = Executors.newFixedThreadPool(workers);
+
+		final CompletionService<Result> completion = new ExecutorCompletionService<>(executor);
+
+		// the index of the entry rendered by each future
+		final Map<Future<Result>, Integer> futures = new HashMap<>();
+
+		final Result[] results = new Result[entries.size()];
+
+		try {
+			int pending = 0;
+
+			for (int i = 0; i < entries.size(); i++) {
+				final Entry entry = entries.get(i);
+				final int permits = getPermits(entry);
+
+				// wait until there is enough heap left to render the entry. The
+				// permits are released by the renderings in progress which are
+				// collected (and checked for errors) meanwhile
+				while (!semaphore.tryAcquire(permits)) {
+					collect(completion.take(), futures, results);
+					pending--;
+				}
+
+				futures.put(completion.submit(new Task(entry, semaphore, permits)), i);
+				pending++;
+			}
+
+			while (pending > 0) {
+				collect(completion.take(), futures, results);
+				pending--;
+			}
+
+			return Arrays.asList(results);
+		} finally {
+			// cancels the renderings in progress if the batch is aborted
+			for (Future<Result> future : futures.keySet()) {
+				future.cancel(true);
+			}
+
+			executor.shutdownNow();
+		}
+	}
+
+	// stores the result of the given completed future
+	private static void collect(Future<Result> future, Map<Future<Result>, Integer> futures, Result[] results)
+			throws InterruptedException {
+
+		try {
+			results[futures.get(future)] = future.get();
+		} catch (ExecutionException e) {
+			// the task catches the exceptions but not the errors
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	// reads the manifest listing one "<input-file> <output-file>" per line
+	// (the empty lines and those starting with '#' are ignored). The relative
+	// paths are resolved against the directory of the manifest
+	static List<Entry> readManifest(File file) throws IOException {
+		Validate.notNull(file, "The given file is null");
+
+		final File directory = file.getAbsoluteFile().getParentFile();
+
+		final List<Entry> entries = new ArrayList<>();
+
+		BufferedReader reader = null;
+
+		try {
+			reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+
+			String line = null;
+
+			int number = 0;
+
+			while ((line = reader.readLine()) != null) {
+				number++;
+				line = line.trim();
+
+				if (line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+
+				final String[] tokens = StringUtils.split(line);
+
+				if (tokens.length != 2) {
+					throw new IOException(String.format("Invalid line %d in manifest '%s': '%s'", number,
+							file.getAbsolutePath(), line));
+				}
+
+				entries.add(new Entry(resolve(directory, tokens[0]), resolve(directory, tokens[1])));
+			}
+		} finally {
+			if (reader != null) {
+				reader.close();
+			}
+		}
+
+		return entries;
+	}
+
+	private static File resolve(File directory, String path) {
+		final File file = new File(path);
+
+		return file.isAbsolute() ? file : new File(directory, path);
+	}
+
+	// writes the results as CSV
+	static void writeReport(List<Result> results, File file) throws IOException {
+		Writer writer = null;
+
+		try {
+			writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+			writer.write("input,output,status,duration (ms),significant revisions,error\n");
+
+			for (Result result : results) {
+				writer.write(String.format("\"%s\",\"%s\",%s,%d,%d,\"%s\"\n", result.getEntry().getInput().getPath(),
+						result.getEntry().getOutput().getPath(), result.isSuccessful() ? "OK" : "FAILED",
+						result.getDuration(), result.getSignificantCount(),
+						result.isSuccessful() ? "" : String.valueOf(result.getError()).replace("\"", "\"\"")));
+			}
+		} finally {
+			if (writer != null) {
+				writer.close();
+			}
+		}
+	}
+
+	// writes the metrics of each log as a JSON object keyed by the input file
+	static void writeMetrics(List<Result> results, File file) throws IOException {
+		Writer writer = null;
+
+		try {
+			writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+			writer.write("{");
+
+			String separator = "\n";
+
+			for (Result result : results) {
+				writer.write(separator + "  " + ExportUtils.quote(result.getEntry().getInput().getPath()) + ": "
+						+ result.getMetrics().toJson().trim().replace("\n", "\n  "));
+
+				separator = ",\n";
+			}
+
+			writer.write("\n}\n");
+		} finally {
+			if (writer != null) {
+				writer.close();
+			}
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		final Map<String, String> options = new TreeMap<>();
+		final List<String> arguments = SvnGraph.parseArguments(args, options);
+
+		if (arguments.size() != 1) {
+			System.out.println(String.format("%s [--workers=<n>] [--heap-budget=<MB>] [--report=<csv-file>] [--metrics=<json-file>] [<SvnGraph options>] <manifest-file>",
+					SvnGraphBatch.class.getSimpleName()));
+			System.exit(1);
+		}
+
+		final int workers = options.containsKey("workers") ? Integer.parseInt(options.remove("workers")) : Runtime
+				.getRuntime().availableProcessors();
+
+		// 3/4 of the maximum heap by default
+		final int heapBudget = options.containsKey("heap-budget") ? Integer.parseInt(options.remove("heap-budget"))
+				: (int) Math.max(1, Runtime.getRuntime().maxMemory() / MB * 3 / 4);
+
+		final String report = options.remove("report");
+		final String metrics = options.remove("metrics");
+
+		SvnGraph.configureLogging(options);
+
+		final List<Entry> entries = readManifest(new File(arguments.get(0)));
+
+		final long start = System.currentTimeMillis();
+
+		final List<Result> results = new SvnGraphBatch(workers, heapBudget, options).run(entries);
+
+		final long duration = System.currentTimeMillis() - start;
+
+		int failures = 0;
+
+		System.out.println();
+
+		for (Result result : results) {
+			if (result.isSuccessful()) {
+				System.out.println(String.format("OK      %8d ms  %s", result.getDuration(), result.getEntry().getInput()));
+			} else {
+				System.out.println(String.format("FAILED  %8d ms  %s (%s)", result.getDuration(), result.getEntry().getInput(),
+						result.getError()));
+
+				failures++;
+			}
+		}
+
+		System.out.println(String.format("Rendered %d logs (%d failed) in %d ms with %d workers", results.size(), failures,
+				duration, workers));
+
+		if (report != null) {
+			writeReport(results, new File(report));
+		}
+		if (metrics != null) {
+			writeMetrics(results, new File(metrics));
+		}
+
+		if (failures > 0) {
+			System.exit(2);
+		}
+	}
+}
@@ -0,0 +1,564 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.svngraph;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.commons.lang.Validate;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Long-running rendering service listening on the loopback interface. A log is
+ * rendered with 'GET /render?input=&lt;log-file&gt;&amp;&lt;options&gt;' (the
+ * options of SvnGraph without the leading "--") and the metrics of the service
+ * are returned by 'GET /metrics'. Only the files under the root directory of
+ * the service can be rendered (a relative input is resolved against it). The
+ * parsed histories and the rendered graphs are kept in LRU caches bounded in
+ * bytes, both keyed by the SHA-1 of the input file (plus the options for the
+ * graphs). The concurrent requests for the same input share the same parsing
+ * and rendering.
+ */
+public final class SvnGraphServer {
+
+	private static final Logger LOGGER = Logger.getLogger(SvnGraphServer.class.getName());
+
+	// the options supported by the service
+	private static final Set<String> OPTIONS = new HashSet<>(Arrays.asList("format", "gzip", "collapse", "prune-age",
+			"prune-activity", "from-revision", "to-revision", "from-date", "to-date"));
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	// the maximum number of file hashes remembered
+	private static final int MAX_DIGESTS = 1024;
+
+	// the hash of a file, valid as long as the file doesn't change
+	private static final class Digest {
+
+		private final long length, lastModified;
+
+		private final String hash;
+
+		Digest(long length, long lastModified, String hash) {
+			this.length = length;
+			this.lastModified = lastModified;
+			this.hash = hash;
+		}
+	}
+
+	// a parsed history and its estimated size in bytes
+	private static final class CachedHistory {
+
+		private final History history;
+
+		private final long size;
+
+		CachedHistory(History history, long size) {
+			this.history = history;
+			this.size = size;
+		}
+	}
+
+	// the canonical directory the input files must be under
+	private final File root;
+
+	private final int parseThreads;
+
+	private final long historyCacheSize;
+
+	private final long resultCacheSize;
+
+	// the parsed histories per hash, in access order
+	private final LinkedHashMap<String, CachedHistory> histories = new LinkedHashMap<>(16, 0.75f, true);
+
+	// the estimated number of bytes in the cache above
+	private long historyBytes;
+
+	// the rendered graphs per hash and options, in access order
+	private final LinkedHashMap<String, byte[]> results = new LinkedHashMap<>(64, 0.75f, true);
+
+	// the number of bytes in the cache above
+	private long resultBytes;
+
+	// the hashes of the last files rendered, in access order
+	private final Map<String, Digest> digests = new LinkedHashMap<String, Digest>(16, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Digest> eldest) {
+			return size() > MAX_DIGESTS;
+		}
+	};
+
+	// the parsings and renderings in progress
+	private final ConcurrentMap<String, FutureTask<History>> parsings = new ConcurrentHashMap<>();
+
+	private final ConcurrentMap<String, FutureTask<byte[]>> renderings = new ConcurrentHashMap<>();
+
+	// the metrics of the service, bound to the threads serving the requests
+	private final Metrics metrics = new Metrics();
+
+	// the sizes of the caches are given in bytes
+	public SvnGraphServer(File root, int parseThreads, long historyCacheSize, long resultCacheSize) throws IOException {
+		Validate.notNull(root, "The given root directory is null");
+		Validate.isTrue(root.isDirectory(), "The given root isn't a directory");
+		Validate.isTrue(parseThreads > 0, "Invalid number of threads ", parseThreads);
+		Validate.isTrue(historyCacheSize >= 0, "Invalid history cache size ", historyCacheSize);
+		Validate.isTrue(resultCacheSize >= 0, "Invalid result cache size ", resultCacheSize);
+
+		this.root = root.getCanonicalFile();
+		this.parseThreads = parseThreads;
+		this.historyCacheSize = historyCacheSize;
+		this.resultCacheSize = resultCacheSize;
+	}
+
+	/**
+	 * Returns the GraphML rendering of the given log (or 'svnadmin dump') file
+	 * with the given options, from the cache when possible.
+	 */
+	public byte[] render(File file, Map<String, String> options) throws Exception {
+		Validate.notNull(file, "The given input file is null");
+		Validate.notNull(options, "The given map of options is null");
+
+		final Metrics previous = Metrics.bind(metrics);
+
+		try {
+			return renderInput(file, options);
+		} finally {
+			Metrics.bind(previous);
+		}
+	}
+
+	private byte[] renderInput(File file, final Map<String, String> options) throws Exception {
+		final File input = resolve(file);
+
+		if (!input.isFile()) {
+			throw new IllegalArgumentException(String.format("The given file '%s' doesn't exist", file.getPath()));
+		}
+		for (String option : options.keySet()) {
+			if (!OPTIONS.contains(option)) {
+				throw new IllegalArgumentException(String.format("Unsupported option '%s'", option));
+			}
+		}
+
+		metrics.increment("server.requests");
+
+		final String hash = getHash(input);
+		final String key = hash + new TreeMap<>(options);
+
+		final byte[] cached = getResult(key);
+
+		if (cached != null) {
+			metrics.increment("server.results.hits");
+
+			return cached;
+		}
+
+		return share(renderings, key, new Callable<byte[]>() {
+			@Override
+			public byte[] call() throws Exception {
+				// the graph may have been rendered in the meantime
+				final byte[] result = getResult(key);
+
+				if (result != null) {
+					return result;
+				}
+
+				final long start = metrics.start();
+
+				final byte[] bytes = render(getHistory(input, hash), options);
+
+				metrics.stop("server.render", start);
+
+				putResult(key, bytes);
+
+				LOGGER.info(String.format("Rendered '%s' with %s (%d bytes)", input.getPath(), options, bytes.length));
+
+				return bytes;
+			}
+		});
+	}
+
+	private static byte[] render(History history, Map<String, String> options) throws Exception {
+		final History selection = SvnGraph.selectRange(history, options);
+
+		BranchGraph graph = new BranchGraph();
+		graph.add(selection);
+
+		final GraphReducer reducer = SvnGraph.createReducer(options);
+
+		if (reducer != null) {
+			graph = reducer.reduce(graph);
+		}
+
+		final ByteArrayOutputStream stream = new ByteArrayOutputStream(BUFFER_SIZE);
+
+		SvnGraph.createExporter(options, options.containsKey("gzip")).export(graph, stream);
+
+		return stream.toByteArray();
+	}
+
+	// returns the canonical form of the given file (resolved against the root
+	// directory if relative) provided it's under the root directory
+	private File resolve(File file) throws IOException {
+		final File canonicalFile = (file.isAbsolute() ? file : new File(root, file.getPath())).getCanonicalFile();
+
+		for (File parent = canonicalFile.getParentFile(); parent != null; parent = parent.getParentFile()) {
+			if (parent.equals(root)) {
+				return canonicalFile;
+			}
+		}
+
+		throw new IllegalArgumentException(String.format("The given file '%s' isn't under the root directory",
+				file.getPath()));
+	}
+
+	private History getHistory(final File input, final String hash) throws Exception {
+		synchronized (histories) {
+			final CachedHistory cached = histories.get(hash);
+
+			if (cached != null) {
+				metrics.increment("server.histories.hits");
+
+				return cached.history;
+			}
+		}
+
+		return share(parsings, hash, new Callable<History>() {
+			@Override
+			public History call() throws Exception {
+				final History history = SvnGraph.parse(input, parseThreads, false);
+
+				putHistory(hash, history);
+
+				return history;
+			}
+		});
+	}
+
+	private void putHistory(String hash, History history) {
+		final long size = history.getEstimatedSize();
+
+		if (size > historyCacheSize) {
+			// would evict the whole cache
+			return;
+		}
+
+		synchronized (histories) {
+			final CachedHistory previous = histories.put(hash, new CachedHistory(history, size));
+
+			historyBytes += size - ((previous != null) ? previous.size : 0);
+
+			// evicts the least recently used histories
+			while (historyBytes > historyCacheSize) {
+				final Map.Entry<String, CachedHistory> eldest = histories.entrySet().iterator().next();
+
+				historyBytes -= eldest.getValue().size;
+
+				histories.remove(eldest.getKey());
+			}
+		}
+	}
+
+	private byte[] getResult(String key) {
+		synchronized (results) {
+			return results.get(key);
+		}
+	}
+
+	private void putResult(String key, byte[] bytes) {
+		if (bytes.length > resultCacheSize) {
+			// would evict the whole cache
+			return;
+		}
+
+		synchronized (results) {
+			final byte[] previous = results.put(key, bytes);
+
+			resultBytes += bytes.length - ((previous != null) ? previous.length : 0);
+
+			// evicts the least recently used graphs
+			while (resultBytes > resultCacheSize) {
+				final Map.Entry<String, byte[]> eldest = results.entrySet().iterator().next();
+
+				resultBytes -= eldest.getValue().length;
+
+				results.remove(eldest.getKey());
+			}
+		}
+	}
+
+	// runs the given task unless a task with the same key is in progress, in
+	// which case its result is awaited
+	private <V> V share(ConcurrentMap<String, FutureTask<V>> tasks, String key, Callable<V> callable)
+			throws Exception {
+
+		final FutureTask<V> task = new FutureTask<>(callable);
+		final FutureTask<V> previous = tasks.putIfAbsent(key, task);
+
+		if (previous == null) {
+			try {
+				task.run();
+			} finally {
+				tasks.remove(key, task);
+			}
+		} else {
+			metrics.increment("server.shared");
+		}
+
+		try {
+			return ((previous != null) ? previous : task).get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception) {
+				throw (Exception) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	// returns the SHA-1 of the given file (only computed again when the file
+	// changes)
+	private String getHash(File file) throws IOException {
+		final String path = file.getAbsolutePath();
+		final long length = file.length(), lastModified = file.lastModified();
+
+		final Digest digest;
+
+		synchronized (digests) {
+			digest = digests.get(path);
+		}
+
+		if ((digest != null) && (digest.length == length) && (digest.lastModified == lastModified)) {
+			return digest.hash;
+		}
+
+		final MessageDigest sha1;
+
+		try {
+			sha1 = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+
+		final long start = metrics.start();
+
+		FileChannel channel = null;
+
+		try {
+			channel = FileChannel.open(file.toPath());
+
+			final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+			while (channel.read(buffer) != -1) {
+				buffer.flip();
+				sha1.update(buffer);
+				buffer.clear();
+			}
+		} finally {
+			if (channel != null) {
+				channel.close();
+			}
+		}
+
+		metrics.stop("server.hash", start);
+
+		final StringBuilder builder = new StringBuilder(40);
+
+		for (byte b : sha1.digest()) {
+			builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+
+		final String hash = builder.toString();
+
+		synchronized (digests) {
+			digests.put(path, new Digest(length, lastModified, hash));
+		}
+
+		return hash;
+	}
+
+	// parses a query string "name=value&flag" into the given map
+	static Map<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+		final Map<String, String> parameters = new TreeMap<>();
+
+		if (query != null) {
+			for (String parameter : query.split("&")) {
+				if (parameter.isEmpty()) {
+					continue;
+				}
+
+				final int index = parameter.indexOf('=');
+
+				if (index == -1) {
+					parameters.put(URLDecoder.decode(parameter, "UTF-8"), "true");
+				} else {
+					parameters.put(URLDecoder.decode(parameter.substring(0, index), "UTF-8"),
+							URLDecoder.decode(parameter.substring(index + 1), "UTF-8"));
+				}
+			}
+		}
+
+		return parameters;
+	}
+
+	private static String getContentType(GraphExporter exporter) {
+		if (exporter instanceof GraphMLExporter) {
+			return "application/xml";
+		}
+		if (exporter instanceof DotExporter) {
+			return "text/vnd.graphviz";
+		}
+		if (exporter instanceof JsonExporter) {
+			return "application/x-ndjson";
+		}
+
+		return "application/octet-stream";
+	}
+
+	private static void send(HttpExchange exchange, int status, String contentType, byte[] bytes) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		exchange.sendResponseHeaders(status, bytes.length);
+
+		final OutputStream stream = exchange.getResponseBody();
+
+		try {
+			stream.write(bytes);
+		} finally {
+			stream.close();
+		}
+	}
+
+	private final class RenderHandler implements HttpHandler {
+
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			try {
+				final Map<String, String> options = parseQuery(exchange.getRequestURI().getRawQuery());
+				final String input = options.remove("input");
+
+				if (input == null) {
+					throw new IllegalArgumentException("The parameter 'input' is missing");
+				}
+
+				final GraphExporter exporter = SvnGraph.createExporter(options, false);
+
+				final byte[] bytes = render(new File(input), options);
+
+				if (options.containsKey("gzip")) {
+					exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+				}
+
+				send(exchange, 200, getContentType(exporter), bytes);
+			} catch (IllegalArgumentException | ParseException e) {
+				send(exchange, 400, "text/plain; charset=UTF-8", String.valueOf(e.getMessage()).getBytes("UTF-8"));
+			} catch (Exception e) {
+				LOGGER.log(Level.WARNING, String.format("Error when processing '%s'", exchange.getRequestURI()), e);
+
+				send(exchange, 500, "text/plain; charset=UTF-8", String.valueOf(e).getBytes("UTF-8"));
+			} finally {
+				exchange.close();
+			}
+		}
+	}
+
+	private final class MetricsHandler implements HttpHandler {
+
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			try {
+				send(exchange, 200, "application/json", metrics.toJson().getBytes("UTF-8"));
+			} finally {
+				exchange.close();
+			}
+		}
+	}
+
+	/**
+	 * Starts serving the requests on the given port of the loopback interface
+	 * with the given number of worker threads.
+	 */
+	public HttpServer start(int port, int workers) throws IOException {
+		Validate.isTrue(workers > 0, String.format("Invalid number of workers %d", workers));
+
+		final HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.createContext("/render", new RenderHandler());
+		server.createContext("/metrics", new MetricsHandler());
+		server.setExecutor(Executors.newFixedThreadPool(workers));
+		server.start();
+
+		LOGGER.info(String.format("Listening on %s", server.getAddress()));
+
+		return server;
+	}
+
+	public static void main(String[] args) throws Exception {
+		final Map<String, String> options = new TreeMap<>();
+		final List<String> arguments = SvnGraph.parseArguments(args, options);
+
+		if (!arguments.isEmpty()) {
+			System.out.println(String.format("%s [--root=<dir>] [--port=<n>] [--workers=<n>] [--threads=<n>] [--history-cache=<MB>] [--result-cache=<MB>] [--verbose] [--debug]",
+					SvnGraphServer.class.getSimpleName()));
+			System.exit(1);
+		}
+
+		SvnGraph.configureLogging(options);
+
+		final int port = options.containsKey("port") ? Integer.parseInt(options.get("port")) : 8080;
+		final int workers = options.containsKey("workers") ? Integer.parseInt(options.get("workers")) : Runtime
+				.getRuntime().availableProcessors();
+		final int threads = options.containsKey("threads") ? Integer.parseInt(options.get("threads")) : 1;
+		final File root = new File(options.containsKey("root") ? options.get("root") : ".");
+		final long historyCacheSize = (options.containsKey("history-cache") ? Long.parseLong(options.get("history-cache")) : 512) * 1024 * 1024;
+		final long resultCacheSize = (options.containsKey("result-cache") ? Long.parseLong(options.get("result-cache")) : 64) * 1024 * 1024;
+
+		new SvnGraphServer(root, threads, historyCacheSize, resultCacheSize).start(port, workers);
+	}
+}
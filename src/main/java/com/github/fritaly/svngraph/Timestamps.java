@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.svngraph;
+
+import java.text.ParseException;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Parser of the timestamps generated by svn (e.g. "2014-11-07T16:45:08.123456Z",
+ * always in UTC) into a number of microseconds since the epoch. Thread-safe and
+ * allocation-free unlike {@link java.text.SimpleDateFormat}.
+ */
+final class Timestamps {
+
+	private static final long MICROS_PER_SECOND = 1000000L;
+
+	private static final long SECONDS_PER_DAY = 86400L;
+
+	private Timestamps() {
+	}
+
+	static long parse(CharSequence text) throws ParseException {
+		Validate.notNull(text, "The given text is null");
+
+		// "yyyy-MM-ddTHH:mm:ss" followed by an optional fraction and 'Z'
+		if (text.length() < 20) {
+			throw new ParseException(String.format("Invalid timestamp '%s'", text), 0);
+		}
+
+		expect(text, 4, '-');
+		expect(text, 7, '-');
+		expect(text, 10, 'T');
+		expect(text, 13, ':');
+		expect(text, 16, ':');
+
+		final int year = digits(text, 0, 4);
+		final int month = digits(text, 5, 2);
+		final int day = digits(text, 8, 2);
+		final int hour = digits(text, 11, 2);
+		final int minute = digits(text, 14, 2);
+		final int second = digits(text, 17, 2);
+
+		if ((month < 1) || (month > 12) || (day < 1) || (day > 31) || (hour > 23) || (minute > 59) || (second > 60)) {
+			throw new ParseException(String.format("Invalid timestamp '%s'", text), 0);
+		}
+
+		// the fraction of second (6 digits for svn) is converted into
+		// microseconds
+		long micros = 0;
+
+		int index = 19;
+
+		if (text.charAt(index) == '.') {
+			index++;
+
+			long scale = 100000;
+
+			while ((index < text.length()) && (text.charAt(index) >= '0') && (text.charAt(index) <= '9')) {
+				micros += (text.charAt(index) - '0') * scale;
+				scale /= 10;
+				index++;
+			}
+		}
+
+		if ((index != text.length() - 1) || (text.charAt(index) != 'Z')) {
+			throw new ParseException(String.format("Invalid timestamp '%s'", text), index);
+		}
+
+		final long seconds = (daysSinceEpoch(year, month, day) * SECONDS_PER_DAY) + (hour * 3600L) + (minute * 60L) + second;
+
+		return (seconds * MICROS_PER_SECOND) + micros;
+	}
+
+	// number of days between 1970-01-01 and the given date of the proleptic
+	// Gregorian calendar
+	private static long daysSinceEpoch(int year, int month, int day) {
+		// shift the year so that it starts in March (the leap day is then the
+		// last day of the year)
+		final long y = (month <= 2) ? year - 1 : year;
+		final long era = ((y >= 0) ? y : y - 399) / 400;
+		final long yearOfEra = y - (era * 400);
+		final long dayOfYear = ((153 * (month + ((month > 2) ? -3 : 9))) + 2) / 5 + day - 1;
+		final long dayOfEra = (yearOfEra * 365) + (yearOfEra / 4) - (yearOfEra / 100) + dayOfYear;
+
+		return (era * 146097) + dayOfEra - 719468;
+	}
+
+	private static void expect(CharSequence text, int index, char expected) throws ParseException {
+		if (text.charAt(index) != expected) {
+			throw new ParseException(String.format("Invalid timestamp '%s'", text), index);
+		}
+	}
+
+	private static int digits(CharSequence text, int index, int count) throws ParseException {
+		int value = 0;
+
+		for (int i = index; i < index + count; i++) {
+			final char c = text.charAt(i);
+
+			if ((c < '0') || (c > '9')) {
+				throw new ParseException(String.format("Invalid timestamp '%s'", text), i);
+			}
+
+			value = (value * 10) + (c - '0');
+		}
+
+		return value;
+	}
+}
@@ -20,6 +20,9 @@ import static com.github.fritaly.svngraph.Utils.*;
 
 import java.text.ParseException;
 
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
 import org.apache.commons.lang.Validate;
 import org.w3c.dom.Element;
 
@@ -57,78 +60,198 @@ public final class Update {
 		}
 	}
 
-	private final Kind kind;
+	private static final Kind[] KINDS = Kind.values();
+
+	private static final Action[] ACTIONS = Action.values();
+
+	private static final int TEXT_MODS = 0x08;
 
-	private final Action action;
+	// the dictionary of the ingest which created this update
+	private final PathDictionary dictionary;
 
-	private final String path;
+	// the paths are stored in the dictionary to save memory (the same prefixes
+	// are repeated over and over), -1 if there is no copy path
+	private final int pathId;
 
-	private String copyFromPath;
+	private final int copyFromPathId;
 
-	private long copyFromRev = -1;
+	private final long copyFromRev;
 
-	private boolean merge;
+	// packs the kind (bit 0), the action (bits 1-2) and the text-mods flag (bit 3)
+	private final byte flags;
 
 	public Update(Element element) throws ParseException {
+		this(element, new PathDictionary());
+	}
+
+	// the path is interned in the given dictionary
+	Update(Element element, PathDictionary dictionary) throws ParseException {
+		Validate.notNull(dictionary, "The given dictionary is null");
 		validateElement(element, "path");
 
-		this.kind = Kind.getKind(element.getAttribute("kind"));
-		this.action = Action.getAction(element.getAttribute("action"));
-		this.path = element.getTextContent();
+		final Kind kind = Kind.getKind(element.getAttribute("kind"));
+		final Action action = Action.getAction(element.getAttribute("action"));
+
+		String copyFromPath = null;
+		long copyFromRev = -1;
+		boolean textMods = false;
 
 		if (element.hasAttribute("copyfrom-path")) {
-			this.copyFromPath = element.getAttribute("copyfrom-path");
+			copyFromPath = element.getAttribute("copyfrom-path");
 		}
 		if (element.hasAttribute("copyfrom-rev")) {
-			this.copyFromRev = Long.parseLong(element.getAttribute("copyfrom-rev"));
+			copyFromRev = Long.parseLong(element.getAttribute("copyfrom-rev"));
 		}
 		if (element.hasAttribute("text-mods")) {
-			this.merge = Boolean.parseBoolean(element.getAttribute("text-mods"));
+			textMods = Boolean.parseBoolean(element.getAttribute("text-mods"));
 		}
+
+		this.dictionary = dictionary;
+		this.pathId = intern(element.getTextContent());
+		this.copyFromPathId = intern(copyFromPath);
+		this.copyFromRev = copyFromRev;
+		this.flags = pack(kind, action, textMods);
+	}
+
+	Update(Kind kind, Action action, String path, String copyFromPath, long copyFromRev, boolean textMods,
+			PathDictionary dictionary) {
+
+		Validate.notNull(kind, "The given kind is null");
+		Validate.notNull(action, "The given action is null");
+		Validate.notNull(path, "The given path is null");
+		Validate.notNull(dictionary, "The given dictionary is null");
+
+		this.dictionary = dictionary;
+		this.pathId = intern(path);
+		this.copyFromPathId = intern(copyFromPath);
+		this.copyFromRev = copyFromRev;
+		this.flags = pack(kind, action, textMods);
+	}
+
+	public Update(XMLStreamReader reader) throws XMLStreamException {
+		this(reader, new PathDictionary());
+	}
+
+	Update(XMLStreamReader reader, PathDictionary dictionary) throws XMLStreamException {
+		Validate.notNull(dictionary, "The given dictionary is null");
+		validateElement(reader, "path");
+
+		final Kind kind = Kind.getKind(reader.getAttributeValue(null, "kind"));
+		final Action action = Action.getAction(reader.getAttributeValue(null, "action"));
+
+		final String copyFromPath = reader.getAttributeValue(null, "copyfrom-path");
+		final String copyFromRev = reader.getAttributeValue(null, "copyfrom-rev");
+		final String textMods = reader.getAttributeValue(null, "text-mods");
+
+		// the attributes must be read before since this call moves the reader
+		// to the end element
+		this.dictionary = dictionary;
+		this.pathId = intern(reader.getElementText());
+		this.copyFromPathId = intern(copyFromPath);
+		this.copyFromRev = (copyFromRev != null) ? Long.parseLong(copyFromRev) : -1;
+		this.flags = pack(kind, action, (textMods != null) && Boolean.parseBoolean(textMods));
+	}
+
+	private int intern(String path) {
+		return (path != null) ? dictionary.intern(path) : -1;
+	}
+
+	private static byte pack(Kind kind, Action action, boolean textMods) {
+		return (byte) (kind.ordinal() | (action.ordinal() << 1) | (textMods ? TEXT_MODS : 0));
 	}
 
+	// the kind, action and text-mods flag packed into a byte
+	byte getFlags() {
+		return flags;
+	}
+
+	/**
+	 * Tells whether the update copies a path from another trunk, branch or
+	 * tag (e.g. a file added by a merge). The copy of a whole trunk, branch or
+	 * tag directory is a creation, not a merge.
+	 */
 	public boolean isMerge() {
-		return merge;
+		if (!isCopy()) {
+			return false;
+		}
+
+		final PathInfo info = getPathInfo();
+
+		if ((info.getRootPath() == null) || info.isRootDirectory()) {
+			return false;
+		}
+
+		final String sourceRoot = getCopySourceInfo().getRootPath();
+
+		return (sourceRoot != null) && !sourceRoot.equals(info.getRootPath());
 	}
 
 	public boolean isCopy() {
-		return (this.copyFromPath != null) && (this.copyFromRev != -1);
+		return (this.copyFromPathId != -1) && (this.copyFromRev != -1);
 	}
 
 	public RevisionPath getCopySource() {
 		if (isCopy()) {
-			return new RevisionPath(this.copyFromPath, this.copyFromRev);
+			return new RevisionPath(getCopyFromPath(), this.copyFromRev);
 		}
 
 		return null;
 	}
 
 	public String getPath() {
-		return path;
+		return dictionary.getPath(pathId);
+	}
+
+	PathDictionary getDictionary() {
+		return dictionary;
+	}
+
+	// the id of the path in the dictionary
+	int getPathId() {
+		return pathId;
+	}
+
+	// the classification of the path, cached by the dictionary
+	PathInfo getPathInfo() {
+		return dictionary.getInfo(pathId);
+	}
+
+	// the classification of the copy path (null if none), cached by the
+	// dictionary
+	PathInfo getCopySourceInfo() {
+		return (copyFromPathId != -1) ? dictionary.getInfo(copyFromPathId) : null;
+	}
+
+	// the raw copy attributes, unlike getCopySource() they're returned even if
+	// only one of them is defined
+	String getCopyFromPath() {
+		return (copyFromPathId != -1) ? dictionary.getPath(copyFromPathId) : null;
+	}
+
+	long getCopyFromRev() {
+		return copyFromRev;
 	}
 
 	public Kind getKind() {
-		return kind;
+		return KINDS[flags & 0x01];
 	}
 
 	public Action getAction() {
-		return action;
+		return ACTIONS[(flags >> 1) & 0x03];
 	}
 
 	// tells whether the given path is updated by this instance
 	public boolean isOnPath(String path) {
 		Validate.notNull(path, "The given path is null");
 
-		return this.path.startsWith(path);
+		return getPath().startsWith(path);
 	}
 
 	public boolean isSignificant() {
-		// a significant update is one affecting a key directory (a branch, a
-		// tag, the trunk) with a valid action (not MODIFY or DELETE)
-		if (getKind() == Kind.FILE) {
-			if (isMerge()) {
-				return true;
-			}
+		// a significant update is a merge or one affecting a key directory (a
+		// branch, a tag, the trunk) with a valid action (not MODIFY or DELETE)
+		if (isMerge()) {
+			return true;
 		}
 
 		if (getKind() != Kind.DIR) {
@@ -138,6 +261,6 @@ public final class Update {
 			return false;
 		}
 
-		return isTrunkPath(this.path) || isBranchPath(this.path) || isTagPath(this.path);
+		return getPathInfo().isRootDirectory();
 	}
 }
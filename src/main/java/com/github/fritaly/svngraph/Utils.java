@@ -16,10 +16,10 @@
  */
 package com.github.fritaly.svngraph;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
-import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.Validate;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
@@ -34,6 +34,31 @@ public class Utils {
 						element.getNodeName()));
 	}
 
+	public static void validateElement(XMLStreamReader reader, String name) {
+		Validate.notNull(reader, "The given XML stream reader is null");
+		Validate.isTrue(reader.isStartElement(), "The given XML stream reader isn't positioned on a start element");
+		Validate.isTrue(
+				reader.getLocalName().equals(name),
+				String.format("The name of the given element isn't valid (Expected: '%s', Actual: '%s'", name,
+						reader.getLocalName()));
+	}
+
+	// skips the element on which the reader is positioned (including its
+	// descendants), the reader is left on the matching end element
+	public static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+		int depth = 1;
+
+		while (depth > 0) {
+			final int event = reader.next();
+
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+			}
+		}
+	}
+
 	public static boolean hasChild(Element root, String childName) {
 		return (root.getElementsByTagName(childName).getLength() > 0);
 	}
@@ -54,104 +79,46 @@ public class Utils {
 		return path.endsWith("/trunk");
 	}
 
-	// no trailing slash expected when pointing directly to a directory
-	private static final Pattern BRANCH_PATTERN = Pattern.compile(".*/branches/([^/]+)");
-
-	// no trailing slash expected when pointing directly to a directory
-	private static final Pattern TAG_PATTERN = Pattern.compile(".*/tags/([^/]+)");
-
-	private static final Pattern MODULE_PATTERN = Pattern.compile(".*/([^/]+)/(trunk|branches|tags)/.*");
+	// the path classification is delegated to PathInfo which scans the path
+	// once and caches the result
 
 	public static boolean isBranchPath(String path) {
-		return (getBranchName(path) != null);
+		return PathInfo.get(path).isBranchDirectory();
 	}
 
 	public static String getBranchName(String path) {
-		final Matcher matcher = BRANCH_PATTERN.matcher(path);
-
-		return matcher.matches() ? matcher.group(1) : null;
+		return PathInfo.get(path).getBranchName();
 	}
 
 	public static String getBranchPath(String path) {
-		final Pattern pattern = Pattern.compile("(.*/branches/([^/]+))(/.*)?");
-
-		final Matcher matcher = pattern.matcher(path);
-
-		return matcher.matches() ? matcher.group(1) : null;
+		return PathInfo.get(path).getBranchPath();
 	}
 
 	public static boolean isTagPath(String path) {
-		return (getTagName(path) != null);
+		return PathInfo.get(path).isTagDirectory();
 	}
 
 	public static String getTagName(String path) {
-		final Matcher matcher = TAG_PATTERN.matcher(path);
-
-		return matcher.matches() ? matcher.group(1) : null;
+		return PathInfo.get(path).getTagName();
 	}
 
 	public static String getTagPath(String path) {
-		final Pattern pattern = Pattern.compile("(.*/tags/([^/]+))(/.*)?");
-
-		final Matcher matcher = pattern.matcher(path);
-
-		return matcher.matches() ? matcher.group(1) : null;
+		return PathInfo.get(path).getTagPath();
 	}
 
 	public static String getTrunkPath(String path) {
-		final Pattern pattern = Pattern.compile("(.*/trunk)(/.*)?");
-
-		final Matcher matcher = pattern.matcher(path);
-
-		return matcher.matches() ? matcher.group(1) : null;
+		return PathInfo.get(path).getTrunkPath();
 	}
 
 	public static String getModule(String path) {
-		final Matcher matcher = MODULE_PATTERN.matcher(path);
-
-		return matcher.matches() ? matcher.group(1) : null;
+		return PathInfo.get(path).getModule();
 	}
 
 	public static String getRootName(String path) {
-		if (isTrunkPath(path)) {
-			return "trunk";
-		}
-		if (isBranchPath(path)) {
-			return getBranchName(path);
-		}
-		if (isTagPath(path)) {
-			return getTagName(path);
-		}
-		if (path.contains("/trunk/")) {
-			return "trunk";
-		}
-
-		final Pattern pattern = Pattern.compile(".*/(branches|tags)/([^/]+)(/.*)?");
-
-		final Matcher matcher = pattern.matcher(path);
-
-		if (matcher.matches()) {
-			return matcher.group(2);
-		}
-
-		return null;
+		return PathInfo.get(path).getRootName();
 	}
 
 	public static String getRootPath(String path) {
-		String result = getTrunkPath(path);
-
-		if (result != null) {
-			return result;
-		}
-
-		result = getBranchPath(path);
-
-		if (result != null) {
-			return result;
-		}
-
-		result = getTagPath(path);
-
-		return result;
+		return PathInfo.get(path).getRootPath();
 	}
 }
@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.svngraph;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class BranchGraphTest {
+
+	private final PathDictionary dictionary = new PathDictionary();
+
+	private Update copy(Update.Kind kind, String path, String copyFromPath, long copyFromRev) {
+		return new Update(kind, Update.Action.ADD, path, copyFromPath, copyFromRev, false, dictionary);
+	}
+
+	private static Revision revision(long number, Update... updates) {
+		return new Revision(number, "alice", number * 1000000, "r" + number, Arrays.asList(updates));
+	}
+
+	@Test
+	public void testPackedKeysAreDistinct() {
+		final int max = BranchGraph.MAX_ROOT_ID;
+		final long revision = BranchGraph.MAX_PACKED_REVISION;
+
+		final Set<Long> keys = new HashSet<>(Arrays.asList(BranchGraph.pack(0, 0, 0), BranchGraph.pack(0, 0, revision),
+				BranchGraph.pack(0, max, 0), BranchGraph.pack(max, 0, 0), BranchGraph.pack(max, max, revision),
+				BranchGraph.pack(1, 0, 0), BranchGraph.pack(0, 1, 0), BranchGraph.pack(0, 0, 1)));
+
+		// the fields don't overlap
+		assertEquals(8, keys.size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPackRootIdOutOfRange() {
+		BranchGraph.pack(BranchGraph.MAX_ROOT_ID + 1, 0, 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPackNegativeRootId() {
+		BranchGraph.pack(0, -1, 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPackRevisionOutOfRange() {
+		BranchGraph.pack(0, 0, BranchGraph.MAX_PACKED_REVISION + 1);
+	}
+
+	@Test
+	public void testMergeIsOneEdgePerSourceRevision() {
+		final BranchGraph graph = new BranchGraph();
+		graph.add(revision(1, copy(Update.Kind.DIR, "/project/branches/b1", "/project/trunk", 0)));
+
+		// 3 files merged from 2 revisions of b1 into the trunk
+		graph.add(revision(2, copy(Update.Kind.FILE, "/project/trunk/a.txt", "/project/branches/b1/a.txt", 1),
+				copy(Update.Kind.FILE, "/project/trunk/b.txt", "/project/branches/b1/b.txt", 1),
+				copy(Update.Kind.FILE, "/project/trunk/c.txt", "/project/branches/b1/c.txt", 0)));
+
+		// the same copies in the next revision aren't duplicates
+		graph.add(revision(3, copy(Update.Kind.FILE, "/project/trunk/a.txt", "/project/branches/b1/a.txt", 1)));
+
+		final List<BranchGraph.CopyEdge> edges = graph.getEdges();
+
+		assertEquals(4, edges.size());
+		assertEquals(BranchGraph.CopyEdge.Kind.COPY, edges.get(0).getKind());
+
+		for (BranchGraph.CopyEdge edge : edges.subList(1, edges.size())) {
+			assertEquals(BranchGraph.CopyEdge.Kind.MERGE, edge.getKind());
+			assertEquals("trunk", edge.getTarget().getPath());
+		}
+
+		assertEquals(new RevisionPath("b1", 1), edges.get(1).getSource());
+		assertEquals(new RevisionPath("b1", 0), edges.get(2).getSource());
+		assertEquals(new RevisionPath("trunk", 3), edges.get(3).getTarget());
+	}
+
+	@Test
+	public void testCopiesBeyondThePackedRangeAreKept() {
+		final BranchGraph graph = new BranchGraph();
+
+		final long source = BranchGraph.MAX_PACKED_REVISION + 1;
+
+		graph.add(revision(source + 1, copy(Update.Kind.FILE, "/project/trunk/a.txt", "/project/branches/b1/a.txt",
+				source), copy(Update.Kind.FILE, "/project/trunk/b.txt", "/project/branches/b1/b.txt", source)));
+
+		// can't be de-duplicated, the copies are kept as is
+		assertEquals(2, graph.getEdges().size());
+	}
+}
@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.svngraph;
+
+import static com.github.fritaly.svngraph.HistoryAssert.assertSameRevisions;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+
+import org.junit.Test;
+
+public class DumpReaderTest {
+
+	private static File getResource(String name) throws Exception {
+		return new File(DumpReaderTest.class.getResource("/" + name).toURI());
+	}
+
+	private static History parseLog() throws Exception {
+		return History.parse(getResource("copy-and-delete.xml"));
+	}
+
+	private static History parseDump() throws Exception {
+		return History.parseDump(getResource("copy-and-delete.dump"));
+	}
+
+	@Test
+	public void testDumpAndLogGiveTheSameModel() throws Exception {
+		assertSameRevisions(parseLog().getRevisions(), parseDump().getRevisions());
+	}
+
+	@Test
+	public void testDeletedDirectoryUnderCopiedDirectory() throws Exception {
+		// '/archive' is a copy of '/branches', '/archive/b1' is only known
+		// through '/branches/b1'
+		final Update update = parseDump().getRevision(6).getUpdates().get(0);
+
+		assertEquals("/archive/b1", update.getPath());
+		assertEquals(Update.Action.DELETE, update.getAction());
+		assertEquals(Update.Kind.DIR, update.getKind());
+	}
+
+	@Test
+	public void testDeletedParentDirectory() throws Exception {
+		// '/tags/1.0/src' was seen as the parent of a node
+		final Update update = parseDump().getRevision(10).getUpdates().get(0);
+
+		assertEquals("/tags/1.0/src", update.getPath());
+		assertEquals(Update.Kind.DIR, update.getKind());
+	}
+}
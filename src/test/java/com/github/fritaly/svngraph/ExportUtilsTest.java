@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.svngraph;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class ExportUtilsTest {
+
+	@Test
+	public void testQuote() {
+		assertEquals("\"branches/1.0\"", ExportUtils.quote("branches/1.0"));
+		assertEquals("\"a\\\"b\\\\c\"", ExportUtils.quote("a\"b\\c"));
+		assertEquals("\"a\\nb\\tc\\u0001\\u007f\"", ExportUtils.quote("a\nb\tc\u0001\u007f"));
+		assertEquals("\"été\"", ExportUtils.quote("été"));
+	}
+
+	@Test
+	public void testQuoteDot() {
+		assertEquals("\"branches/1.0\"", ExportUtils.quoteDot("branches/1.0"));
+		assertEquals("\"a\\\"b\\\\c\"", ExportUtils.quoteDot("a\"b\\c"));
+
+		// no escape sequence for the control characters in DOT
+		assertEquals("\"a b c  \"", ExportUtils.quoteDot("a\nb\tc\u0001\u007f"));
+		assertEquals("\"été\"", ExportUtils.quoteDot("été"));
+	}
+}
@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.svngraph;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class GraphReducerTest {
+
+	private BranchGraph graph;
+
+	private void copy(String source, long sourceRevision, String target, long targetRevision, PathInfo.Kind kind,
+			BranchGraph.CopyEdge.Kind edgeKind) {
+
+		graph.addEdge(graph.addNode(source, sourceRevision, (source.equals("trunk") ? PathInfo.Kind.TRUNK
+				: PathInfo.Kind.BRANCH)), graph.addNode(target, targetRevision, kind), edgeKind);
+	}
+
+	private static GraphReducer reducer(String... options) {
+		final Map<String, String> map = new TreeMap<>();
+
+		for (String option : options) {
+			final String[] tokens = option.split("=");
+
+			map.put(tokens[0], (tokens.length > 1) ? tokens[1] : null);
+		}
+
+		return SvnGraph.createReducer(map);
+	}
+
+	// the edges of the given graph as "source@revision->target@revision"
+	private static List<String> getEdges(BranchGraph graph) {
+		final List<String> list = new ArrayList<>();
+
+		for (BranchGraph.CopyEdge edge : graph.getEdges()) {
+			list.add(String.format("%s@%d->%s@%d", edge.getSource().getPath(), edge.getSource().getRevision(), edge
+					.getTarget().getPath(), edge.getTarget().getRevision()));
+		}
+
+		return list;
+	}
+
+	@Before
+	public void setUp() {
+		// trunk:  1 10 20
+		// old:    2 3            (inactive since the revision 3)
+		// active: 11 12 13 14 15 16, merged into the trunk at 20
+		// 1.0:    25             (a single node)
+		graph = new BranchGraph();
+
+		copy("trunk", 1, "old", 2, PathInfo.Kind.BRANCH, BranchGraph.CopyEdge.Kind.COPY);
+		graph.addNode("old", 3, PathInfo.Kind.BRANCH);
+		copy("trunk", 10, "active", 11, PathInfo.Kind.BRANCH, BranchGraph.CopyEdge.Kind.COPY);
+
+		for (long revision = 12; revision <= 16; revision++) {
+			graph.addNode("active", revision, PathInfo.Kind.BRANCH);
+		}
+
+		copy("active", 14, "trunk", 20, PathInfo.Kind.TRUNK, BranchGraph.CopyEdge.Kind.MERGE);
+		copy("trunk", 20, "1.0", 25, PathInfo.Kind.TAG, BranchGraph.CopyEdge.Kind.COPY);
+
+		graph.setLastRevision(30);
+	}
+
+	@Test
+	public void testNoReduction() {
+		assertNull(reducer());
+	}
+
+	@Test
+	public void testPruneAge() {
+		final BranchGraph result = reducer("prune-age=15").reduce(graph);
+
+		assertEquals(Arrays.asList("1.0", "active", "trunk"), new ArrayList<>(result.getBranches()));
+		assertEquals(Arrays.asList("trunk@10->active@11", "active@14->trunk@20", "trunk@20->1.0@25"), getEdges(result));
+		assertEquals(30, result.getLastRevision());
+
+		// the source graph isn't modified
+		assertEquals(4, graph.getBranches().size());
+	}
+
+	@Test
+	public void testPruneActivity() {
+		final BranchGraph result = reducer("prune-activity=2").reduce(graph);
+
+		assertEquals(Arrays.asList("active", "old", "trunk"), new ArrayList<>(result.getBranches()));
+		assertEquals(Arrays.asList("trunk@1->old@2", "trunk@10->active@11", "active@14->trunk@20"), getEdges(result));
+		assertEquals(graph.getNodeCount() - 1, result.getNodeCount());
+	}
+
+	@Test
+	public void testTrunkIsNeverPruned() {
+		final BranchGraph result = reducer("prune-age=0", "prune-activity=100").reduce(graph);
+
+		assertEquals(Collections.singletonList("trunk"), new ArrayList<>(result.getBranches()));
+		assertArrayEquals(new long[] { 1, 10, 20 }, result.getRevisions("trunk"));
+		assertEquals(Collections.emptyList(), getEdges(result));
+	}
+
+	@Test
+	public void testCollapse() {
+		final BranchGraph result = reducer("collapse").reduce(graph);
+
+		// the linked nodes are kept, the runs of other nodes collapsed
+		assertArrayEquals(new long[] { 11, 12, 14, 15 }, result.getRevisions("active"));
+		assertArrayEquals(new long[] { 11, 13, 14, 16 }, result.getRangeEnds("active"));
+		assertArrayEquals(new long[] { 2, 3 }, result.getRevisions("old"));
+		assertArrayEquals(new long[] { 2, 3 }, result.getRangeEnds("old"));
+		assertArrayEquals(new long[] { 1, 10, 20 }, result.getRevisions("trunk"));
+		assertEquals(getEdges(graph), getEdges(result));
+	}
+
+	@Test
+	public void testCollapseAfterPruning() {
+		final BranchGraph result = reducer("collapse", "prune-age=15", "prune-activity=2").reduce(graph);
+
+		assertEquals(Arrays.asList("active", "trunk"), new ArrayList<>(result.getBranches()));
+		assertArrayEquals(new long[] { 11, 12, 14, 15 }, result.getRevisions("active"));
+		assertArrayEquals(new long[] { 1, 10, 20 }, result.getRangeEnds("trunk"));
+		assertEquals(Arrays.asList("trunk@10->active@11", "active@14->trunk@20"), getEdges(result));
+	}
+}
@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.svngraph;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+// assertions comparing the models of two histories
+final class HistoryAssert {
+
+	private HistoryAssert() {
+	}
+
+	static void assertSameRevisions(List<Revision> expected, List<Revision> actual) {
+		assertEquals(expected.size(), actual.size());
+
+		for (int i = 0; i < expected.size(); i++) {
+			final Revision expectedRevision = expected.get(i), actualRevision = actual.get(i);
+
+			assertEquals(expectedRevision.getNumber(), actualRevision.getNumber());
+			assertEquals(expectedRevision.getAuthor(), actualRevision.getAuthor());
+			assertEquals(expectedRevision.getTimestamp(), actualRevision.getTimestamp());
+			assertEquals(expectedRevision.getMessage(), actualRevision.getMessage());
+			assertEquals(expectedRevision.getUpdates().size(), actualRevision.getUpdates().size());
+
+			for (int j = 0; j < expectedRevision.getUpdates().size(); j++) {
+				final Update expectedUpdate = expectedRevision.getUpdates().get(j);
+				final Update actualUpdate = actualRevision.getUpdates().get(j);
+
+				final String message = String.format("Revision %d, path %s", expectedRevision.getNumber(),
+						expectedUpdate.getPath());
+
+				assertEquals(message, expectedUpdate.getPath(), actualUpdate.getPath());
+				assertEquals(message, expectedUpdate.getKind(), actualUpdate.getKind());
+				assertEquals(message, expectedUpdate.getAction(), actualUpdate.getAction());
+				assertEquals(message, expectedUpdate.getCopyFromPath(), actualUpdate.getCopyFromPath());
+				assertEquals(message, expectedUpdate.getCopyFromRev(), actualUpdate.getCopyFromRev());
+				assertEquals(message, expectedUpdate.getFlags(), actualUpdate.getFlags());
+			}
+		}
+	}
+}
@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.svngraph;
+
+import static com.github.fritaly.svngraph.HistoryAssert.assertSameRevisions;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class HistorySnapshotTest {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private static File getResource(String name) throws Exception {
+		return new File(HistorySnapshotTest.class.getResource("/" + name).toURI());
+	}
+
+	@Test
+	public void testReadWrittenSnapshot() throws Exception {
+		final File logFile = getResource("copy-and-delete.xml"), snapshotFile = folder.newFile("log.snapshot");
+
+		final History history = History.parse(logFile);
+
+		HistorySnapshot.write(history, snapshotFile, logFile);
+
+		assertSameRevisions(history.getRevisions(), HistorySnapshot.read(snapshotFile, logFile).getRevisions());
+	}
+
+	@Test
+	public void testMessagesReadOnDemand() throws Exception {
+		final File snapshotFile = folder.newFile("history.snapshot");
+
+		final PathDictionary dictionary = new PathDictionary();
+
+		// multi-byte, empty and missing messages, one being also a path
+		final History history = new History(Arrays.asList(
+				new Revision(1, "alice", 1000000L, "cr\u00e9ation du tronc \u2713", Arrays.asList(new Update(
+						Update.Kind.DIR, Update.Action.ADD, "/trunk", null, -1, false, dictionary))),
+				new Revision(2, "bob", 2000000L, "", Arrays.asList(new Update(Update.Kind.DIR, Update.Action.ADD,
+						"/branches/b1", "/trunk", 1, false, dictionary))),
+				new Revision(3, "alice", 3000000L, null, Arrays.asList(new Update(Update.Kind.FILE,
+						Update.Action.MODIFY, "/branches/b1/\u00e9t\u00e9.txt", null, -1, true, dictionary))),
+				new Revision(4, null, 4000000L, "/trunk", Arrays.asList(new Update(Update.Kind.DIR,
+						Update.Action.DELETE, "/branches/b1", null, -1, false, dictionary)))));
+
+		HistorySnapshot.write(history, snapshotFile, null);
+
+		final History snapshot = HistorySnapshot.read(snapshotFile, null);
+
+		// the message isn't held in memory
+		assertTrue(snapshot.getRevisions().get(0).getEstimatedSize() < history.getRevisions().get(0).getEstimatedSize());
+
+		assertSameRevisions(history.getRevisions(), snapshot.getRevisions());
+		assertNull(snapshot.getRevisions().get(2).getMessage());
+	}
+
+	@Test
+	public void testLoadSucceedsWhenSnapshotCantBeWritten() throws Exception {
+		final File logFile = getResource("copy-and-delete.xml");
+
+		// the directory of the snapshot doesn't exist
+		final File snapshotFile = new File(new File(folder.getRoot(), "missing"), "log.snapshot");
+
+		final History history = HistorySnapshot.load(logFile, snapshotFile);
+
+		assertSameRevisions(History.parse(logFile).getRevisions(), history.getRevisions());
+		assertFalse(snapshotFile.exists());
+	}
+}
@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.svngraph;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+
+public class HistoryTest {
+
+	private static History parseLog() throws Exception {
+		return History.parse(new File(HistoryTest.class.getResource("/copy-and-delete.xml").toURI()));
+	}
+
+	private static long first(History history) {
+		return history.getRevisions().get(0).getNumber();
+	}
+
+	private static long last(History history) {
+		final List<Revision> revisions = history.getRevisions();
+
+		return revisions.get(revisions.size() - 1).getNumber();
+	}
+
+	@Test
+	public void testUnboundedDateRange() throws Exception {
+		final History history = parseLog().getDateRange(new Date(0), new Date(Long.MAX_VALUE));
+
+		assertEquals(10, history.getRevisionCount());
+	}
+
+	@Test
+	public void testDateRangeWithoutEnd() throws Exception {
+		final History history = SvnGraph.selectRange(parseLog(), Collections.singletonMap("from-date", "2014-03-03"));
+
+		assertEquals(6, history.getRevisionCount());
+		assertEquals(5, first(history));
+		assertEquals(10, last(history));
+	}
+
+	@Test
+	public void testDateRangeWithoutStart() throws Exception {
+		final History history = SvnGraph.selectRange(parseLog(), Collections.singletonMap("to-date", "2014-03-02"));
+
+		assertEquals(4, history.getRevisionCount());
+		assertEquals(1, first(history));
+		assertEquals(4, last(history));
+	}
+
+	@Test
+	public void testRevisionRangeWithoutEnd() throws Exception {
+		final History history = SvnGraph.selectRange(parseLog(), Collections.singletonMap("from-revision", "8"));
+
+		assertEquals(3, history.getRevisionCount());
+		assertEquals(8, first(history));
+		assertEquals(10, last(history));
+	}
+}
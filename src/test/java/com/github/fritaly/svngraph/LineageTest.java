@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.svngraph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class LineageTest {
+
+	private final PathDictionary dictionary = new PathDictionary();
+
+	private BranchGraph graph;
+
+	private long number;
+
+	private Update add(String path) {
+		return new Update(Update.Kind.DIR, Update.Action.ADD, path, null, -1, false, dictionary);
+	}
+
+	private Update copy(String path, String copyFromPath, long copyFromRev) {
+		return new Update(Update.Kind.DIR, Update.Action.ADD, path, copyFromPath, copyFromRev, false, dictionary);
+	}
+
+	private Update delete(String path) {
+		return new Update(Update.Kind.DIR, Update.Action.DELETE, path, null, -1, false, dictionary);
+	}
+
+	// adds a revision with the given updates and returns its number
+	private long commit(Update... updates) {
+		graph.add(new Revision(++number, "alice", number * 1000000, "r" + number, Arrays.asList(updates)));
+
+		return number;
+	}
+
+	private static RevisionPath node(String branch, long revision) {
+		return new RevisionPath(branch, revision);
+	}
+
+	@Before
+	public void setUp() {
+		graph = new BranchGraph();
+		number = 0;
+
+		commit(add("/project/trunk"), add("/project/branches"), add("/project/tags"));
+		commit(add("/project/branches/vendor"));
+		commit(copy("/project/branches/b1", "/project/trunk", 1));
+		commit(copy("/project/branches/b2", "/project/branches/b1", 3));
+		commit(copy("/project/tags/1.0", "/project/branches/b2", 4));
+		commit(delete("/project/branches/b2"));
+		commit(copy("/project/branches/b3", "/project/trunk", 1));
+		commit(copy("/project/tags/2.0", "/project/trunk", 7));
+		commit(copy("/project/tags/v1", "/project/branches/vendor", 2));
+	}
+
+	@Test
+	public void testBranchOfBranch() {
+		final Lineage lineage = new Lineage(graph);
+
+		assertEquals(node("b1", 3), lineage.getBranchPoint("b2"));
+		assertEquals(Arrays.asList(node("b1", 3), node("trunk", 1)), lineage.getAncestors("b2"));
+		assertEquals(Arrays.asList("b1", "b2", "1.0", "b3", "2.0"), lineage.getDescendants("trunk"));
+		assertEquals(Arrays.asList("b2", "1.0"), lineage.getDescendants("b1"));
+		assertEquals(node("b1", 3), lineage.getCommonAncestor("b1", "b2"));
+		assertEquals(node("trunk", 1), lineage.getCommonAncestor("b2", "b3"));
+		assertEquals(node("trunk", 1), lineage.getCommonAncestor(node("b2", 4), node("trunk", 7)));
+		assertTrue(lineage.isAncestor(node("trunk", 1), node("b2", 4)));
+		assertFalse(lineage.isAncestor(node("b3", 7), node("b2", 4)));
+	}
+
+	@Test
+	public void testDeletedBranch() {
+		final Lineage lineage = new Lineage(graph);
+
+		// the deletion of b2 isn't a node but its tag still descends from it
+		assertEquals(Arrays.asList(node("b2", 4), node("b1", 3), node("trunk", 1)), lineage.getAncestors("1.0"));
+		assertEquals(Collections.singletonList("1.0"), lineage.getDescendants("b2"));
+		assertEquals(node("b2", 4), lineage.getCommonAncestor("b2", "1.0"));
+		assertEquals(node("trunk", 1), lineage.getCommonAncestor("1.0", "b3"));
+		assertEquals(node("trunk", 1), lineage.getCommonAncestor("1.0", "2.0"));
+	}
+
+	@Test
+	public void testRoot() {
+		final Lineage lineage = new Lineage(graph);
+
+		assertNull(lineage.getParent(node("trunk", 1)));
+		assertNull(lineage.getBranchPoint("trunk"));
+		assertEquals(Collections.emptyList(), lineage.getAncestors("trunk"));
+		assertEquals(node("trunk", 1), lineage.getParent(node("trunk", 7)));
+
+		// vendor wasn't copied from another branch, it's another root
+		assertNull(lineage.getBranchPoint("vendor"));
+		assertEquals(Collections.singletonList("v1"), lineage.getDescendants("vendor"));
+		assertNull(lineage.getCommonAncestor("v1", "b1"));
+		assertFalse(lineage.isAncestor(node("trunk", 1), node("vendor", 2)));
+		assertTrue(lineage.isAncestor(node("trunk", 1), node("trunk", 1)));
+	}
+}
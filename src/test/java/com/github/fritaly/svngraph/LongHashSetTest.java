@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.svngraph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LongHashSetTest {
+
+	@Test
+	public void testAddAndContains() {
+		final LongHashSet set = new LongHashSet();
+
+		assertTrue(set.add(42));
+		assertFalse(set.add(42));
+		assertTrue(set.add(-42));
+		assertTrue(set.add(Long.MIN_VALUE));
+		assertTrue(set.add(Long.MAX_VALUE));
+
+		assertTrue(set.contains(42));
+		assertTrue(set.contains(-42));
+		assertTrue(set.contains(Long.MIN_VALUE));
+		assertTrue(set.contains(Long.MAX_VALUE));
+		assertFalse(set.contains(43));
+		assertEquals(4, set.size());
+	}
+
+	@Test
+	public void testZero() {
+		// 0 marks the empty slots and is tracked apart
+		final LongHashSet set = new LongHashSet();
+
+		assertFalse(set.contains(0));
+		assertTrue(set.add(0));
+		assertFalse(set.add(0));
+		assertTrue(set.contains(0));
+		assertEquals(1, set.size());
+
+		set.clear();
+
+		assertFalse(set.contains(0));
+		assertEquals(0, set.size());
+	}
+
+	@Test
+	public void testGrowth() {
+		final LongHashSet set = new LongHashSet();
+
+		// keys differing in their high bits only, like the packed links
+		for (long i = 0; i < 100000; i++) {
+			assertTrue(set.add(i << 44));
+		}
+
+		assertEquals(100000, set.size());
+
+		for (long i = 0; i < 100000; i++) {
+			assertTrue(set.contains(i << 44));
+			assertFalse(set.add(i << 44));
+			assertFalse(set.contains((i << 44) | 1));
+		}
+	}
+
+	@Test
+	public void testCollisions() {
+		// a small table whose slots are shared by many values
+		final LongHashSet set = new LongHashSet(4);
+
+		for (long i = 1; i <= 1000; i++) {
+			assertTrue(set.add(i * 16));
+		}
+		for (long i = 1; i <= 1000; i++) {
+			assertTrue(set.contains(i * 16));
+			assertFalse(set.contains((i * 16) + 1));
+		}
+
+		assertEquals(1000, set.size());
+	}
+
+	@Test
+	public void testClear() {
+		final LongHashSet set = new LongHashSet();
+
+		for (long i = 1; i <= 10000; i++) {
+			set.add(i);
+		}
+
+		// the table shrinks back but the set remains usable
+		set.clear();
+
+		assertEquals(0, set.size());
+
+		for (long i = 1; i <= 10000; i++) {
+			assertFalse(set.contains(i));
+		}
+		for (long i = 1; i <= 10000; i++) {
+			assertTrue(set.add(i));
+		}
+
+		assertEquals(10000, set.size());
+	}
+}
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.svngraph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MetricsTest {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private static File getResource(String name) throws Exception {
+		return new File(MetricsTest.class.getResource("/" + name).toURI());
+	}
+
+	// a history with 2 modules of 2 significant revisions each
+	private static History createModules() {
+		final PathDictionary dictionary = new PathDictionary();
+
+		final Revision[] revisions = new Revision[4];
+
+		for (int i = 0; i < revisions.length; i++) {
+			final String module = (i % 2 == 0) ? "/a/core" : "/b/core";
+
+			revisions[i] = new Revision(i + 1, "alice", i * 1000000L, "r" + (i + 1), Arrays.asList(new Update(
+					Update.Kind.DIR, Update.Action.ADD, module + "/branches/b" + i, module + "/trunk", i, false,
+					dictionary)));
+		}
+
+		return new History(Arrays.asList(revisions));
+	}
+
+	@Test
+	public void testBind() {
+		final Metrics global = Metrics.getInstance(), metrics = new Metrics();
+
+		assertSame(null, Metrics.bind(metrics));
+		assertSame(metrics, Metrics.getInstance());
+		assertSame(metrics, Metrics.bind(null));
+		assertSame(global, Metrics.getInstance());
+	}
+
+	@Test
+	public void testPoolThreadsRecordIntoTheBoundMetrics() throws Exception {
+		final Metrics global = Metrics.getInstance(), metrics = new Metrics();
+
+		final long globalRevisions = global.get("graph.revisions"), globalParsed = global.get("parse.revisions");
+
+		final Metrics previous = Metrics.bind(metrics);
+
+		try {
+			// parsed and rendered on the threads of the pools
+			History.parse(getResource("copy-and-delete.xml"), 2, true);
+
+			new ModuleShardWriter(2, new JsonExporter(false), null).write(createModules(), folder.newFolder("shards"));
+		} finally {
+			Metrics.bind(previous);
+		}
+
+		assertEquals(10, metrics.get("parse.revisions"));
+		assertEquals(4, metrics.get("graph.revisions"));
+		assertEquals(globalParsed, global.get("parse.revisions"));
+		assertEquals(globalRevisions, global.get("graph.revisions"));
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.svngraph;
+
+import static com.github.fritaly.svngraph.HistoryAssert.assertSameRevisions;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Random;
+
+import org.apache.commons.lang.StringUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ParallelLogParserTest {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private static File getResource(String name) throws Exception {
+		return new File(ParallelLogParserTest.class.getResource("/" + name).toURI());
+	}
+
+	// generates a log whose entries have a random number of paths and
+	// messages of random sizes (some larger than the chunks, some empty or
+	// missing)
+	private File generateLog(int count) throws Exception {
+		final File file = folder.newFile("log.xml");
+
+		final Random random = new Random(count);
+
+		final Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+
+		try {
+			writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<log>\n");
+
+			for (int i = 1; i <= count; i++) {
+				writer.write(String.format("<logentry\n   revision=\"%d\">\n<author>user%d</author>\n", i,
+						random.nextInt(5)));
+				writer.write(String.format("<date>2014-03-%02dT%02d:%02d:%02d.%06dZ</date>\n<paths>\n",
+						1 + (i / 100), (i / 10) % 24, i % 60, random.nextInt(60), random.nextInt(1000000)));
+
+				final int paths = 1 + random.nextInt(4);
+
+				for (int j = 0; j < paths; j++) {
+					final int branch = random.nextInt(10);
+
+					if ((i > 1) && (j == 0) && (random.nextInt(4) == 0)) {
+						writer.write(String.format("<path\n   action=\"A\"\n   kind=\"dir\"\n   copyfrom-path=\"/trunk\"\n"
+								+ "   copyfrom-rev=\"%d\"\n   text-mods=\"false\">/branches/b%d</path>\n",
+								random.nextInt(i - 1) + 1, branch));
+					} else {
+						writer.write(String.format("<path\n   action=\"%s\"\n   kind=\"file\"\n   text-mods=\"true\">"
+								+ "/branches/b%d/src/File%d.java</path>\n", "AMDR".charAt(random.nextInt(4)), branch,
+								random.nextInt(100)));
+					}
+				}
+
+				writer.write("</paths>\n");
+
+				switch (random.nextInt(10)) {
+				case 0:
+					// no message
+					break;
+				case 1:
+					writer.write("<msg></msg>\n");
+					break;
+				case 2:
+					writer.write("<msg>" + StringUtils.repeat("A long message &amp; &lt;escaped&gt; text\n", 200)
+							+ "</msg>\n");
+					break;
+				default:
+					writer.write(String.format("<msg>Commit %d &amp; été\n\nsecond line</msg>\n", i));
+				}
+
+				writer.write("</logentry>\n");
+			}
+
+			writer.write("</log>\n");
+		} finally {
+			writer.close();
+		}
+
+		return file;
+	}
+
+	private static void assertSameAsSequential(File file) throws Exception {
+		final History expected = History.parse(file);
+
+		// chunks smaller than the entries, cut inside the entries and larger
+		for (int chunkSize : new int[] { 16, 333, 4096, 1024 * 1024 }) {
+			assertSameRevisions(expected.getRevisions(), new ParallelLogParser(4, false, chunkSize).parse(file)
+					.getRevisions());
+
+			final History lazy = new ParallelLogParser(4, true, chunkSize).parse(file);
+
+			assertSameRevisions(expected.getRevisions(), lazy.getRevisions());
+
+			// the log is reopened when reading the messages once closed
+			lazy.closeMessages();
+
+			assertSameRevisions(expected.getRevisions(), lazy.getRevisions());
+		}
+	}
+
+	@Test
+	public void testFixture() throws Exception {
+		assertSameAsSequential(getResource("copy-and-delete.xml"));
+	}
+
+	@Test
+	public void testGeneratedLog() throws Exception {
+		assertSameAsSequential(generateLog(1000));
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.svngraph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.text.ParseException;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+public class TimestampsTest {
+
+	// the expected number of microseconds computed with a calendar
+	private static long micros(int year, int month, int day, int hour, int minute, int second, long fraction) {
+		final Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+		calendar.clear();
+		calendar.set(year, month - 1, day, hour, minute, second);
+
+		return (calendar.getTimeInMillis() * 1000) + fraction;
+	}
+
+	private static void assertInvalid(String text) {
+		try {
+			Timestamps.parse(text);
+
+			fail(String.format("The timestamp '%s' was parsed", text));
+		} catch (ParseException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testWithoutFraction() throws Exception {
+		assertEquals(micros(2014, 11, 7, 16, 45, 8, 0), Timestamps.parse("2014-11-07T16:45:08Z"));
+	}
+
+	@Test
+	public void testMilliseconds() throws Exception {
+		assertEquals(micros(2014, 11, 7, 16, 45, 8, 123000), Timestamps.parse("2014-11-07T16:45:08.123Z"));
+	}
+
+	@Test
+	public void testMicroseconds() throws Exception {
+		assertEquals(micros(2014, 11, 7, 16, 45, 8, 123456), Timestamps.parse("2014-11-07T16:45:08.123456Z"));
+		assertEquals(micros(2014, 11, 7, 16, 45, 8, 7), Timestamps.parse("2014-11-07T16:45:08.000007Z"));
+	}
+
+	@Test
+	public void testCalendar() throws Exception {
+		assertEquals(0, Timestamps.parse("1970-01-01T00:00:00.000000Z"));
+		assertEquals(-1, Timestamps.parse("1969-12-31T23:59:59.999999Z"));
+		assertEquals(micros(2016, 2, 29, 23, 59, 59, 0), Timestamps.parse("2016-02-29T23:59:59Z"));
+		assertEquals(micros(2000, 3, 1, 0, 0, 0, 0), Timestamps.parse("2000-03-01T00:00:00Z"));
+		assertEquals(micros(2100, 12, 31, 12, 0, 0, 0), Timestamps.parse("2100-12-31T12:00:00Z"));
+	}
+
+	@Test
+	public void testMalformed() {
+		assertInvalid("");
+		assertInvalid("2014-11-07");
+		assertInvalid("2014-11-07T16:45:08");
+		assertInvalid("2014-11-07T16:45:08.123456");
+		assertInvalid("2014-11-07T16:45:08+01:00");
+		assertInvalid("2014-11-07 16:45:08.123456Z");
+		assertInvalid("2014/11/07T16:45:08.123456Z");
+		assertInvalid("2014-1x-07T16:45:08.123456Z");
+		assertInvalid("2014-13-07T16:45:08.123456Z");
+		assertInvalid("2014-11-07T24:45:08.123456Z");
+		assertInvalid("2014-11-07T16:45:08.12a456Z");
+		assertInvalid("2014-11-07T16:45:08.123456ZZ");
+	}
+}